@@ -0,0 +1,39 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Temp folders documents of benchmarks are written to.
+ */
+final class BenchmarkFiles {
+
+  private BenchmarkFiles() {
+  }
+
+  /**
+   * To create empty temp folder
+   * @return : folder
+   * @throws IOException
+   */
+  static Path createFolder() throws IOException {
+    return Files.createTempDirectory("pdfmaster-benchmark");
+  }
+
+  /**
+   * To delete folder with its files
+   * @param folder : folder, may be null
+   * @throws IOException
+   */
+  static void delete(Path folder) throws IOException {
+    if (folder == null)
+      return;
+    try (Stream<Path> paths = Files.walk(folder)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+        Files.deleteIfExists(path);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import com.pramod.pdfmaster.OutputMode;
+import com.pramod.pdfmaster.PDFGenerationUtils;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio button groups, every call adds a new field to the form.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormBenchmark {
+  @Param({"4", "64"})
+  public int options;
+
+  private Path folder;
+  private PDFGenerationUtils pdf;
+  private PDColor color;
+  private LinkedHashMap<String, String> buttons;
+  private int fieldCount;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    folder = BenchmarkFiles.createFolder();
+    buttons = new LinkedHashMap<>();
+    for (int i = 0; i < options; i++)
+      buttons.put("Option " + i, "option" + i);
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    pdf = new PDFGenerationUtils(folder.toString(), "form.pdf", OutputMode.STREAMING);
+    color = pdf.getColor(new float[]{53, 121, 246});
+    fieldCount = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() throws IOException {
+    pdf.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    BenchmarkFiles.delete(folder);
+  }
+
+  @Benchmark
+  public void addRadioButtons() {
+    pdf.addRadioButtons(buttons, "option0", color, "rb" + fieldCount++);
+  }
+}
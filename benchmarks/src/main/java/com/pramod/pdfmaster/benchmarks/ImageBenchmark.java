@@ -0,0 +1,78 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import com.pramod.pdfmaster.Gravity;
+import com.pramod.pdfmaster.OutputMode;
+import com.pramod.pdfmaster.PDFGenerationUtils;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting an image from a local file.
+ *
+ * {@link #insertImage()} draws an image already embedded in the document, which is the cost of every
+ * image after the first. {@link #insertImageInNewDocument()} also decodes, encodes and embeds it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageBenchmark {
+  @Param({"jpg", "png"})
+  public String format;
+
+  private Path folder;
+  private String imagePath;
+  private PDFGenerationUtils pdf;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    folder = BenchmarkFiles.createFolder();
+    // photo like content: gradients with noise
+    BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(42);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        int noise = random.nextInt(24);
+        image.setRGB(x, y, ((x * 255 / 800 + noise) & 0xFF) << 16 | ((y * 255 / 600 + noise) & 0xFF) << 8 | 128);
+      }
+    }
+    imagePath = folder.resolve("image." + format).toString();
+    ImageIO.write(image, format, new File(imagePath));
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    pdf = new PDFGenerationUtils(folder.toString(), "image.pdf", OutputMode.STREAMING);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() throws IOException {
+    pdf.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    BenchmarkFiles.delete(folder);
+  }
+
+  @Benchmark
+  public int insertImage() {
+    return pdf.insertImage(imagePath, 200, 150, Gravity.CENTER);
+  }
+
+  @Benchmark
+  public int insertImageInNewDocument() throws IOException {
+    try (PDFGenerationUtils document = new PDFGenerationUtils(folder.toString(), "new.pdf")) {
+      return document.insertImage(imagePath, 200, 150, Gravity.CENTER);
+    }
+  }
+}
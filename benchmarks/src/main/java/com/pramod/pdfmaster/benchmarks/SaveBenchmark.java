@@ -0,0 +1,52 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import com.pramod.pdfmaster.Gravity;
+import com.pramod.pdfmaster.PDFGenerationUtils;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving an in memory document, which is generated once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SaveBenchmark {
+  private static final String PARAGRAPH = ("Every page carries a few paragraphs of text like this one, "
+    + "so that content streams and fonts are written as they are for real reports. ").repeat(3);
+
+  @Param({"1", "100", "10000"})
+  public int pages;
+
+  private Path folder;
+  private PDFGenerationUtils pdf;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    folder = BenchmarkFiles.createFolder();
+    pdf = new PDFGenerationUtils(folder.toString(), "save.pdf");
+    PDColor color = pdf.getColor(new float[]{0, 0, 0});
+    int paragraph = 0;
+    do {
+      pdf.addText(paragraph++ + " " + PARAGRAPH, 12, false, color, Gravity.START);
+    } while (pdf.getPageCount() < pages);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    pdf.close();
+    BenchmarkFiles.delete(folder);
+  }
+
+  @Benchmark
+  public void savePdf() throws IOException {
+    pdf.savePdf();
+  }
+}
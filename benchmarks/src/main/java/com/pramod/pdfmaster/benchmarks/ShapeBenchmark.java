@@ -0,0 +1,52 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import com.pramod.pdfmaster.Gravity;
+import com.pramod.pdfmaster.OutputMode;
+import com.pramod.pdfmaster.PDFGenerationUtils;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path construction of shapes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeBenchmark {
+  private Path folder;
+  private PDFGenerationUtils pdf;
+  private PDColor color;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    folder = BenchmarkFiles.createFolder();
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    pdf = new PDFGenerationUtils(folder.toString(), "shape.pdf", OutputMode.STREAMING);
+    color = pdf.getColor(new float[]{53, 121, 246});
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() throws IOException {
+    pdf.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    BenchmarkFiles.delete(folder);
+  }
+
+  @Benchmark
+  public void drawRoundedRectangle() {
+    pdf.drawRoundedRectangle(200, 40, 8, false, color, Gravity.CENTER);
+  }
+}
@@ -0,0 +1,63 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import com.pramod.pdfmaster.Gravity;
+import com.pramod.pdfmaster.OutputMode;
+import com.pramod.pdfmaster.PDFGenerationUtils;
+import com.pramod.pdfmaster.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Table layout: sampling column widths, wrapping cells and paginating rows with repeated headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+  @Param({"1000"})
+  public int rows;
+
+  private Path folder;
+  private PDFGenerationUtils pdf;
+  private Table table;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    folder = BenchmarkFiles.createFolder();
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    pdf = new PDFGenerationUtils(folder.toString(), "table.pdf", OutputMode.STREAMING);
+    table = new Table()
+      .addColumn("Date", 70, Gravity.START)
+      .addColumn("Description", Gravity.START)
+      .addColumn("Account", Gravity.CENTER)
+      .addColumn("Amount", 80, Gravity.END);
+    table.setHEADER_COLOR(pdf.getColor(new float[]{220, 230, 245}));
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() throws IOException {
+    pdf.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    BenchmarkFiles.delete(folder);
+  }
+
+  @Benchmark
+  public void addTable() {
+    pdf.addTable(table, IntStream.range(0, rows)
+      .mapToObj(i -> List.of("2024-01-" + (i % 28 + 1), "Payment " + i, "ACC-" + (i % 13), i + ".00")));
+  }
+}
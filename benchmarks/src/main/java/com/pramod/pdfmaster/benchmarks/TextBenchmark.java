@@ -0,0 +1,85 @@
+package com.pramod.pdfmaster.benchmarks;
+
+import com.pramod.pdfmaster.Gravity;
+import com.pramod.pdfmaster.OutputMode;
+import com.pramod.pdfmaster.PDFGenerationUtils;
+import com.pramod.pdfmaster.RichText;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text paths: measuring, wrapping and writing text operators.
+ *
+ * Documents are streamed to a temp file, so heap does not grow with the number of calls in an iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+  private static final String SHORT_TEXT = "Invoice 2024-00042";
+  private static final String LONG_TEXT = ("The quick brown fox jumps over the lazy dog, while the report keeps on "
+    + "listing line items, totals and remarks for every customer of the month. ").repeat(8);
+
+  private Path folder;
+  private PDFGenerationUtils pdf;
+  private PDColor color;
+  private LinkedHashMap<String, PDColor> colorText;
+  private PDColor blue;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    folder = BenchmarkFiles.createFolder();
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    pdf = new PDFGenerationUtils(folder.toString(), "text.pdf", OutputMode.STREAMING);
+    color = pdf.getColor(new float[]{0, 0, 0});
+    blue = pdf.getColor(new float[]{53, 121, 246});
+    colorText = new LinkedHashMap<>();
+    for (int i = 0; i < 10; i++)
+      colorText.put("Sample " + i + "  ", i % 2 == 0 ? color : blue);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() throws IOException {
+    pdf.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    BenchmarkFiles.delete(folder);
+  }
+
+  @Benchmark
+  public void addShortText() {
+    pdf.addText(SHORT_TEXT, 12, false, color, Gravity.START);
+  }
+
+  @Benchmark
+  public void addLongText() {
+    pdf.addText(LONG_TEXT, 12, false, color, Gravity.START);
+  }
+
+  @Benchmark
+  public void addColorText() {
+    pdf.addColorText(colorText, 10, false, Gravity.START);
+  }
+
+  @Benchmark
+  public void addRichText() {
+    RichText text = new RichText();
+    for (int i = 0; i < 10; i++)
+      text.add("Amount " + i + ": ", color, true, 10).add("1,250.00  ", blue, false, 12);
+    pdf.addRichText(text, Gravity.START);
+  }
+}
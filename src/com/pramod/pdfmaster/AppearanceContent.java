@@ -0,0 +1,83 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content of a widget appearance stream, shared by all documents, also when rendered concurrently.
+ *
+ * Appearance content only depends on its {@link AppearanceKey} and uses no resources, so it is drawn once
+ * and every document wraps the same immutable bytes in a stream object of its own, as a stream belongs to
+ * the document it is written in.
+ */
+final class AppearanceContent {
+  private static final Map<AppearanceKey, AppearanceContent> CONTENTS = new ConcurrentHashMap<>();
+  private final byte[] content;
+  // encoded as drawn, null when content is not compressed
+  private final COSName filter;
+  private final float width;
+  private final float height;
+
+  private AppearanceContent(byte[] content, COSName filter, float width, float height) {
+    this.content = content;
+    this.filter = filter;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @param key : appearance key
+   * @return : content drawn for key, null if it is not drawn yet
+   */
+  static AppearanceContent get(AppearanceKey key) {
+    return CONTENTS.get(key);
+  }
+
+  /**
+   * To keep content of an appearance stream drawn for key, for other documents
+   * Streams with resources or a chain of filters are not kept
+   * @param key : appearance key
+   * @param appearanceStream : appearance stream drawn for key
+   * @throws IOException
+   */
+  static void put(AppearanceKey key, PDAppearanceStream appearanceStream) throws IOException {
+    COSStream stream = appearanceStream.getCOSObject();
+    COSBase filter = stream.getDictionaryObject(COSName.FILTER);
+    if (stream.containsKey(COSName.RESOURCES) || filter != null && !(filter instanceof COSName))
+      return;
+    byte[] content;
+    try (InputStream inputStream = stream.createRawInputStream()) {
+      content = inputStream.readAllBytes();
+    }
+    PDRectangle bBox = appearanceStream.getBBox();
+    CONTENTS.putIfAbsent(key, new AppearanceContent(content, (COSName) filter, bBox.getWidth(), bBox.getHeight()));
+  }
+
+  /**
+   * To get an appearance stream with this content
+   * @param document : document stream is written in
+   * @return : new appearance stream
+   * @throws IOException
+   */
+  PDAppearanceStream createStream(PDDocument document) throws IOException {
+    PDAppearanceStream appearanceStream = new PDAppearanceStream(document);
+    appearanceStream.setBBox(new PDRectangle(width, height));
+    COSStream stream = appearanceStream.getCOSObject();
+    try (OutputStream outputStream = stream.createRawOutputStream()) {
+      outputStream.write(content);
+    }
+    if (filter != null)
+      stream.setItem(COSName.FILTER, filter);
+    return appearanceStream;
+  }
+}
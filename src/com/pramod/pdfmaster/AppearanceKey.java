@@ -0,0 +1,88 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+
+import java.util.Arrays;
+
+/**
+ * Key of a widget appearance stream, made of everything the stream is drawn from.
+ * Widgets with same key share one appearance stream in a document, and its content across documents.
+ */
+final class AppearanceKey {
+
+  /**
+   * Kind of widget appearance is drawn for
+   */
+  enum Shape {
+    RADIO_BUTTON, CHECK_BOX
+  }
+
+  private final Shape shape;
+  private final float width;
+  private final float height;
+  private final float lineWidth;
+  private final float[] borderColor;
+  private final float[] backgroundColor;
+  private final boolean on;
+
+  /**
+   * @param shape : kind of widget
+   * @param width : widget width
+   * @param height : widget height
+   * @param lineWidth : border width
+   * @param borderColor : border colour
+   * @param backgroundColor : background colour
+   * @param on : whether appearance is for on state
+   */
+  AppearanceKey(Shape shape, float width, float height, float lineWidth,
+                PDColor borderColor, PDColor backgroundColor, boolean on) {
+    this.shape = shape;
+    this.width = width;
+    this.height = height;
+    this.lineWidth = lineWidth;
+    this.borderColor = borderColor.getComponents();
+    this.backgroundColor = backgroundColor.getComponents();
+    this.on = on;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + shape.hashCode();
+    result = prime * result + Float.floatToIntBits(width);
+    result = prime * result + Float.floatToIntBits(height);
+    result = prime * result + Float.floatToIntBits(lineWidth);
+    result = prime * result + Arrays.hashCode(borderColor);
+    result = prime * result + Arrays.hashCode(backgroundColor);
+    result = prime * result + (on ? 1231 : 1237);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    AppearanceKey other = (AppearanceKey) obj;
+    if (shape != other.shape || on != other.on)
+      return false;
+    if (Float.floatToIntBits(width) != Float.floatToIntBits(other.width)
+      || Float.floatToIntBits(height) != Float.floatToIntBits(other.height)
+      || Float.floatToIntBits(lineWidth) != Float.floatToIntBits(other.lineWidth))
+      return false;
+    if (!Arrays.equals(borderColor, other.borderColor) || !Arrays.equals(backgroundColor, other.backgroundColor))
+      return false;
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "AppearanceKey [shape=" + shape + ", width=" + width + ", height=" + height + ", lineWidth=" + lineWidth
+      + ", borderColor=" + Arrays.toString(borderColor) + ", backgroundColor=" + Arrays.toString(backgroundColor)
+      + ", on=" + on + "]";
+  }
+}
@@ -0,0 +1,73 @@
+package com.pramod.pdfmaster;
+
+import java.io.IOException;
+
+/**
+ * A document to be rendered by {@link BatchRenderer}.
+ * Renderer gets its own {@link PDFGenerationUtils}, so cursor and layout state are never shared between jobs.
+ */
+public final class BatchJob {
+
+  /**
+   * Draws content of a document, pdf is saved by {@link BatchRenderer} once it returns
+   */
+  @FunctionalInterface
+  public interface Renderer {
+    void render(PDFGenerationUtils pdfGenerationUtils) throws IOException;
+  }
+
+  private final String folderPath;
+  private final String fileName;
+  private final OutputMode outputMode;
+  private final Renderer renderer;
+
+  /**
+   * @param folderPath : folder to save pdf in
+   * @param fileName : pdf file name
+   * @param renderer : draws content of document
+   */
+  public BatchJob(String folderPath, String fileName, Renderer renderer) {
+    this(folderPath, fileName, OutputMode.IN_MEMORY, renderer);
+  }
+
+  /**
+   * @param folderPath : folder to save pdf in
+   * @param fileName : pdf file name
+   * @param outputMode : where to keep document data till it is saved
+   * @param renderer : draws content of document
+   */
+  public BatchJob(String folderPath, String fileName, OutputMode outputMode, Renderer renderer) {
+    this.folderPath = folderPath;
+    this.fileName = fileName;
+    this.outputMode = outputMode;
+    this.renderer = renderer;
+  }
+
+  public String getFolderPath() {
+    return folderPath;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public OutputMode getOutputMode() {
+    return outputMode;
+  }
+
+  public Renderer getRenderer() {
+    return renderer;
+  }
+
+  /**
+   * @return : path of pdf file
+   */
+  public String getFilePath() {
+    return folderPath.concat("/").concat(fileName);
+  }
+
+  @Override
+  public String toString() {
+    return "BatchJob [filePath=" + getFilePath() + ", outputMode=" + outputMode + "]";
+  }
+}
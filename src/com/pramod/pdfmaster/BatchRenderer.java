@@ -0,0 +1,100 @@
+package com.pramod.pdfmaster;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Renders many documents concurrently on a work-stealing pool.
+ *
+ * Every job gets its own {@link PDFGenerationUtils}, so cursor, page and form state are isolated.
+ * Fonts (with their width tables) and widget colours are immutable and shared by all jobs,
+ * so starting a job costs only the document itself.
+ */
+public final class BatchRenderer implements AutoCloseable {
+  private final ForkJoinPool pool;
+
+  /**
+   * To create renderer using all available processors
+   */
+  public BatchRenderer() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param parallelism : max number of documents rendered at the same time
+   */
+  public BatchRenderer(int parallelism) {
+    this.pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * To start rendering a document
+   * @param job : document to render
+   * @return : future completed with pdf file path once pdf is saved
+   */
+  public CompletableFuture<String> submit(BatchJob job) {
+    return CompletableFuture.supplyAsync(() -> render(job), pool);
+  }
+
+  /**
+   * To start rendering documents
+   * @param jobs : documents to render
+   * @return : futures completed with pdf file paths, in order of jobs
+   */
+  public List<CompletableFuture<String>> submitAll(Collection<BatchJob> jobs) {
+    List<CompletableFuture<String>> futures = new ArrayList<>(jobs.size());
+    for (BatchJob job : jobs)
+      futures.add(submit(job));
+    return futures;
+  }
+
+  /**
+   * To render documents and wait till all of them are saved
+   * A failing job does not stop other jobs, first failure is thrown once all jobs are done
+   * with other failures added as suppressed
+   * @param jobs : documents to render
+   * @throws IOException
+   */
+  public void renderAll(Collection<BatchJob> jobs) throws IOException {
+    IOException failure = null;
+    for (CompletableFuture<String> future : submitAll(jobs)) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        IOException cause = e.getCause() instanceof UncheckedIOException
+          ? ((UncheckedIOException) e.getCause()).getCause() : new IOException(e.getCause());
+        if (failure == null)
+          failure = cause;
+        else
+          failure.addSuppressed(cause);
+      }
+    }
+    if (failure != null)
+      throw failure;
+  }
+
+  /**
+   * To stop worker threads once submitted jobs are done
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  private String render(BatchJob job) {
+    try (PDFGenerationUtils pdfGenerationUtils = new PDFGenerationUtils(job.getFolderPath(), job.getFileName(),
+      job.getOutputMode())) {
+      job.getRenderer().render(pdfGenerationUtils);
+      pdfGenerationUtils.savePdf();
+      return job.getFilePath();
+    } catch (IOException e) {
+      throw new UncheckedIOException(job.getFilePath(), e);
+    }
+  }
+}
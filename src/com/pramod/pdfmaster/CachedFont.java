@@ -0,0 +1,208 @@
+package com.pramod.pdfmaster;
+
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.HorizontalMetricsTable;
+import org.apache.fontbox.ttf.OS2WindowsMetricsTable;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Standard 14 or embedded TrueType font loaded once along with its glyph advance widths.
+ * Widths are kept in a float table indexed by unicode code point (in 1/1000 text space units),
+ * so measuring a string is a plain loop without any allocation.
+ *
+ * Embedded fonts are parsed once, each document loads its own pdf font from the parsed tables
+ * and embeds a subset of the glyphs it draws, see {@link FontRegistry#load(String)}.
+ *
+ * Instances are immutable after construction and shared between threads by {@link FontRegistry}.
+ */
+public final class CachedFont {
+  // code points above basic multilingual plane are looked up in cmap of embedded fonts
+  private static final int MAX_TABLE_CODE_POINT = 0xFFFF;
+
+  private final Standard14Fonts.FontName fontName;
+  private final PDType1Font font;
+  private final TrueTypeFont trueTypeFont;
+  private final String name;
+  private final float[] widths;
+  private final float defaultWidth;
+  private final float capHeight;
+  private final CmapLookup cmap;
+  private final HorizontalMetricsTable metrics;
+  private final float unitScale;
+
+  CachedFont(Standard14Fonts.FontName fontName) {
+    this.fontName = fontName;
+    this.font = new PDType1Font(fontName);
+    this.trueTypeFont = null;
+    this.name = fontName.getName();
+    this.cmap = null;
+    this.metrics = null;
+    this.unitScale = 0;
+
+    GlyphList glyphList = font.getGlyphList();
+    Map<Integer, String> codeToName = font.getEncoding().getCodeToNameMap();
+    int maxCodePoint = 0;
+    int[] codePoints = new int[256];
+    Arrays.fill(codePoints, -1);
+    for (Map.Entry<Integer, String> entry : codeToName.entrySet()) {
+      int code = entry.getKey();
+      String unicode = glyphList.toUnicode(entry.getValue());
+      if (code < 0 || code > 255 || unicode == null || unicode.codePointCount(0, unicode.length()) != 1)
+        continue;
+      codePoints[code] = unicode.codePointAt(0);
+      maxCodePoint = Math.max(maxCodePoint, codePoints[code]);
+    }
+
+    float[] table = new float[maxCodePoint + 1];
+    Arrays.fill(table, -1);
+    for (int code = 0; code < codePoints.length; code++) {
+      int codePoint = codePoints[code];
+      if (codePoint < 0)
+        continue;
+      try {
+        table[codePoint] = font.getWidth(code);
+        // Warm up encoding caches of the font, so that sharing it across threads only reads them
+        font.encode(new String(Character.toChars(codePoint)));
+      } catch (IOException | IllegalArgumentException e) {
+        table[codePoint] = -1;
+      }
+    }
+    this.widths = table;
+    this.defaultWidth = font.getAverageFontWidth();
+    this.capHeight = font.getFontDescriptor().getCapHeight();
+  }
+
+  CachedFont(TrueTypeFont trueTypeFont) throws IOException {
+    this.fontName = null;
+    this.font = null;
+    this.trueTypeFont = trueTypeFont;
+    this.name = trueTypeFont.getName();
+    this.cmap = trueTypeFont.getUnicodeCmapLookup();
+    this.metrics = trueTypeFont.getHorizontalMetrics();
+    this.unitScale = 1000f / trueTypeFont.getUnitsPerEm();
+
+    float[] table = new float[MAX_TABLE_CODE_POINT + 1];
+    Arrays.fill(table, -1);
+    int maxCodePoint = 0;
+    for (int glyphId = 1; glyphId < trueTypeFont.getNumberOfGlyphs(); glyphId++) {
+      List<Integer> codePoints = cmap.getCharCodes(glyphId);
+      if (codePoints == null)
+        continue;
+      float width = metrics.getAdvanceWidth(glyphId) * unitScale;
+      for (int codePoint : codePoints) {
+        if (codePoint < 0 || codePoint > MAX_TABLE_CODE_POINT)
+          continue;
+        table[codePoint] = width;
+        maxCodePoint = Math.max(maxCodePoint, codePoint);
+      }
+    }
+    this.widths = Arrays.copyOf(table, maxCodePoint + 1);
+    this.defaultWidth = metrics.getAdvanceWidth(0) * unitScale;
+
+    OS2WindowsMetricsTable os2 = trueTypeFont.getOS2Windows();
+    if (os2 != null && os2.getVersion() >= 2 && os2.getCapHeight() > 0)
+      this.capHeight = os2.getCapHeight() * unitScale;
+    else
+      this.capHeight = trueTypeFont.getHorizontalHeader().getAscender() * unitScale;
+  }
+
+  /**
+   * @return : name of standard 14 font, null for embedded fonts
+   */
+  public Standard14Fonts.FontName getFontName() {
+    return fontName;
+  }
+
+  /**
+   * @return : postscript name of font
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return : whether font is embedded in documents, instead of being a standard 14 font
+   */
+  public boolean isEmbedded() {
+    return trueTypeFont != null;
+  }
+
+  /**
+   * @return : pdfbox font to set on content streams and resources, null for embedded fonts which
+   *           every document loads for itself
+   */
+  public PDType1Font getFont() {
+    return font;
+  }
+
+  TrueTypeFont getTrueTypeFont() {
+    return trueTypeFont;
+  }
+
+  /**
+   * To get advance width of a glyph
+   * Code points not available in font encoding are measured with average font width,
+   * or with width of missing glyph for embedded fonts
+   * @param codePoint : unicode code point
+   * @return : width in 1/1000 text space units
+   */
+  public float getWidth(int codePoint) {
+    if (codePoint >= 0 && codePoint < widths.length) {
+      float width = widths[codePoint];
+      if (width >= 0)
+        return width;
+    } else if (cmap != null && codePoint > MAX_TABLE_CODE_POINT) {
+      int glyphId = cmap.getGlyphId(codePoint);
+      if (glyphId > 0)
+        return metrics.getAdvanceWidth(glyphId) * unitScale;
+    }
+    return defaultWidth;
+  }
+
+  /**
+   * To measure part of text
+   * @param text : text to measure
+   * @param start : start index (inclusive)
+   * @param end : end index (exclusive)
+   * @param fontSize : font size
+   * @return : width of text in points
+   */
+  public float getStringWidth(CharSequence text, int start, int end, float fontSize) {
+    float width = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+        width += getWidth(Character.toCodePoint(c, text.charAt(++i)));
+      } else {
+        width += getWidth(c);
+      }
+    }
+    return width * fontSize / 1000;
+  }
+
+  /**
+   * To measure text
+   * @param text : text to measure
+   * @param fontSize : font size
+   * @return : width of text in points
+   */
+  public float getStringWidth(CharSequence text, float fontSize) {
+    return getStringWidth(text, 0, text.length(), fontSize);
+  }
+
+  /**
+   * @param fontSize : font size
+   * @return : cap height in points
+   */
+  public float getCapHeight(float fontSize) {
+    return capHeight / 1000 * fontSize;
+  }
+}
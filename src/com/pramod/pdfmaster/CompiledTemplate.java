@@ -0,0 +1,64 @@
+package com.pramod.pdfmaster;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable, compiled form of a {@link DocumentTemplate}, safe to share between threads.
+ * Drawn with {@link PDFGenerationUtils#addTemplate(CompiledTemplate, java.util.Map)}.
+ * A template with form fields is drawn once per document, or once per field prefix with
+ * {@link PDFGenerationUtils#addTemplate(CompiledTemplate, java.util.Map, String)}, as field names are unique in a form.
+ */
+public final class CompiledTemplate {
+  private final List<TemplateElement> elements;
+  private final Set<String> names;
+  private final Set<String> fieldNames;
+  private final float margin;
+  private final int leading;
+
+  CompiledTemplate(List<TemplateElement> elements, Set<String> names, Set<String> fieldNames,
+                   float margin, int leading) {
+    this.elements = List.copyOf(elements);
+    this.names = Set.copyOf(names);
+    this.fieldNames = Set.copyOf(fieldNames);
+    this.margin = margin;
+    this.leading = leading;
+  }
+
+  /**
+   * @return : names of placeholders and fields values can be given for
+   */
+  public Set<String> getNames() {
+    return names;
+  }
+
+  /**
+   * @return : names of form fields, without prefix they are drawn with
+   */
+  public Set<String> getFieldNames() {
+    return fieldNames;
+  }
+
+  /**
+   * @return : number of pre-rendered static blocks
+   */
+  public int getBlockCount() {
+    int count = 0;
+    for (TemplateElement element : elements)
+      if (element instanceof TemplateBlock)
+        count++;
+    return count;
+  }
+
+  List<TemplateElement> getElements() {
+    return elements;
+  }
+
+  float getMargin() {
+    return margin;
+  }
+
+  int getLeading() {
+    return leading;
+  }
+}
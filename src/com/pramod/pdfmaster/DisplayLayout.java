@@ -0,0 +1,73 @@
+package com.pramod.pdfmaster;
+
+import java.util.List;
+
+/**
+ * Positions and pages resolved for nodes of a {@link DisplayList}, nothing is drawn yet.
+ */
+public final class DisplayLayout {
+  private final List<LayoutNode> nodes;
+  private final int[] pages;
+  private final Position[] positions;
+  private final int pageCount;
+  private final int pageWidth;
+  private final int endX;
+  private final int endY;
+
+  DisplayLayout(List<LayoutNode> nodes, int[] pages, Position[] positions, int pageCount, int pageWidth,
+                int endX, int endY) {
+    this.nodes = nodes;
+    this.pages = pages;
+    this.positions = positions;
+    this.pageCount = pageCount;
+    this.pageWidth = pageWidth;
+    this.endX = endX;
+    this.endY = endY;
+  }
+
+  /**
+   * @return : number of pages content spans, counting the page it starts on
+   */
+  public int getPageCount() {
+    return pageCount;
+  }
+
+  /**
+   * @param index : index of node in list
+   * @return : page of node, 0 for the page layout starts on
+   */
+  public int getPage(int index) {
+    return pages[index];
+  }
+
+  /**
+   * @param index : index of node in list
+   * @return : position node is drawn at, null if node draws nothing
+   */
+  public Position getPosition(int index) {
+    return positions[index];
+  }
+
+  /**
+   * @return : position after last node
+   */
+  public Position getEndPosition() {
+    return new Position(endX, endY);
+  }
+
+  List<LayoutNode> getNodes() {
+    return nodes;
+  }
+
+  int getPageWidth() {
+    return pageWidth;
+  }
+
+  int getEndX() {
+    return endX;
+  }
+
+  int getEndY() {
+    return endY;
+  }
+}
@@ -0,0 +1,184 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Content recorded as typed layout nodes, laid out and rendered in separate passes.
+ *
+ * Methods record the same calls as {@link PDFGenerationUtils} without measuring or drawing anything.
+ * {@link #layout(PDRectangle, float, int)} resolves positions and page breaks in one linear sweep, so a
+ * layout can be tried for other page sizes or margins and thrown away without writing any content.
+ * {@link PDFGenerationUtils#addDisplayList(DisplayList)} lays out list from current position of document
+ * and renders it, giving same output as making the calls directly.
+ * Unlike direct calls, a node can be kept on the same page as the next one, see {@link #keepWithNext()}.
+ *
+ * Not thread safe, text lines are cached in nodes for the last page width they were laid out with.
+ */
+public final class DisplayList {
+  private final List<LayoutNode> nodes = new ArrayList<>();
+  // nodes moved to next page together with the node after them
+  private final BitSet keepWithNext = new BitSet();
+
+  /**
+   * To add text
+   * @see PDFGenerationUtils#addText(String, int, boolean, PDColor, Gravity)
+   */
+  public void addText(String text, int fontSize, boolean isBold, PDColor color, Gravity gravity) {
+    nodes.add(new LayoutNode.Text(text, fontSize, isBold, color, gravity));
+  }
+
+  /**
+   * To add text in given font
+   * @see PDFGenerationUtils#addText(String, CachedFont, int, PDColor, Gravity)
+   */
+  public void addText(String text, CachedFont font, int fontSize, PDColor color, Gravity gravity) {
+    nodes.add(new LayoutNode.Text(text, font, fontSize, color, gravity));
+  }
+
+  /**
+   * To add color text
+   * @see PDFGenerationUtils#addColorText(HashMap, int, boolean, Gravity)
+   */
+  public void addColorText(HashMap<String, PDColor> text, int fontSize, boolean isBold, Gravity gravity) {
+    nodes.add(new LayoutNode.StyledText(RichText.of(text, fontSize, isBold), gravity));
+  }
+
+  /**
+   * To add rich text
+   * @see PDFGenerationUtils#addRichText(RichText, Gravity)
+   */
+  public void addRichText(RichText text, Gravity gravity) {
+    nodes.add(new LayoutNode.StyledText(text, gravity));
+  }
+
+  /**
+   * To add line
+   * @see PDFGenerationUtils#drawLines(int, PDColor, Gravity)
+   */
+  public void drawLines(int width, PDColor pdColor, Gravity gravity) {
+    nodes.add(new LayoutNode.Line(width, pdColor, gravity));
+  }
+
+  /**
+   * To add empty line
+   * @see PDFGenerationUtils#moveToNextLine()
+   */
+  public void moveToNextLine() {
+    nodes.add(LayoutNode.NextLine.INSTANCE);
+  }
+
+  /**
+   * To add rectangle
+   * @see PDFGenerationUtils#drawRectangle(int, int, PDColor, Gravity)
+   */
+  public void drawRectangle(int width, int height, PDColor color, Gravity gravity) {
+    nodes.add(new LayoutNode.Rectangle(width, height, color, gravity));
+  }
+
+  /**
+   * To add rounded rectangle
+   * @see PDFGenerationUtils#drawRoundedRectangle(int, int, int, boolean, PDColor, Gravity)
+   */
+  public void drawRoundedRectangle(int width, int height, int cornerRadius, boolean isToDrawOnlyTopRadius,
+                                   PDColor color, Gravity gravity) {
+    nodes.add(new LayoutNode.RoundedRectangle(width, height, cornerRadius, isToDrawOnlyTopRadius, color, gravity));
+  }
+
+  /**
+   * To add image, fetched and embedded only when list is rendered
+   * Unlike {@link PDFGenerationUtils#insertImage(String, int, int, Gravity)}, space is kept for image
+   * also when it can not be fetched, as layout is done before fetching
+   */
+  public void insertImage(String imageUrl, int imgWidth, int imgHeight, Gravity gravity) {
+    nodes.add(new LayoutNode.Image(imageUrl, imgWidth, imgHeight, gravity));
+  }
+
+  /**
+   * To keep last added node on the same page as the node after it
+   * Both move to next page when they do not fit together, eg. a heading and its first paragraph
+   */
+  public void keepWithNext() {
+    if (!nodes.isEmpty())
+      keepWithNext.set(nodes.size() - 1);
+  }
+
+  /**
+   * @return : number of recorded nodes
+   */
+  public int size() {
+    return nodes.size();
+  }
+
+  /**
+   * To lay out list from top of an empty page
+   * @param pageSize : page size
+   * @param margin : margin
+   * @param leading : space between lines
+   * @return : resolved layout
+   */
+  public DisplayLayout layout(PDRectangle pageSize, float margin, int leading) {
+    return layout(pageSize, margin, leading, (int) margin, (int) (pageSize.getHeight() - 2*margin));
+  }
+
+  /**
+   * To lay out list from given position of first page
+   * Page breaks are decided same way as {@link PDFGenerationUtils}, before a node whose height does not fit
+   * above bottom margin
+   * @param pageSize : page size
+   * @param margin : margin
+   * @param leading : space between lines
+   * @param x : horizontal start position
+   * @param y : vertical start position
+   * @return : resolved layout
+   */
+  DisplayLayout layout(PDRectangle pageSize, float margin, int leading, int x, int y) {
+    int pageWidth = (int) (pageSize.getWidth() - 2*margin);
+    int top = (int) (pageSize.getHeight() - 2*margin);
+    int[] pages = new int[nodes.size()];
+    Position[] positions = new Position[nodes.size()];
+    Point cursor = new Point(x, y);
+    int page = 0;
+    for (int i = 0; i < nodes.size(); i++) {
+      LayoutNode node = nodes.get(i);
+      if (node.canBreakPage() && (!fits(node, cursor, margin, pageWidth)
+        || (keepWithNext.get(i) && cursor.y != top && !fitsWithNext(i, cursor, margin, pageWidth, leading)))) {
+        page++;
+        cursor.x = (int) margin;
+        cursor.y = top;
+      }
+      pages[i] = page;
+      positions[i] = node.place(cursor, margin, pageWidth, leading);
+    }
+    return new DisplayLayout(List.copyOf(nodes), pages, positions, page + 1, pageWidth, cursor.x, cursor.y);
+  }
+
+  private boolean fits(LayoutNode node, Point cursor, float margin, int pageWidth) {
+    return cursor.y > node.getHeight(pageWidth) + margin;
+  }
+
+  /**
+   * To check whether chain of nodes kept together, starting at given node, fits on current page
+   * @param start : index of first node of chain
+   * @param cursor : current position, not changed
+   * @return : whether all nodes of chain and the node after it fit
+   */
+  private boolean fitsWithNext(int start, Point cursor, float margin, int pageWidth, int leading) {
+    Point lookahead = new Point(cursor);
+    for (int i = start; i < nodes.size(); i++) {
+      LayoutNode node = nodes.get(i);
+      if (node.canBreakPage() && !fits(node, lookahead, margin, pageWidth))
+        return false;
+      node.place(lookahead, margin, pageWidth, leading);
+      if (!keepWithNext.get(i))
+        break;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,290 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Layout recorded once and drawn for many records, with only values changing.
+ *
+ * Methods record the same calls as {@link PDFGenerationUtils}. Text, lines and shapes are static,
+ * placeholders, images and form fields are drawn per record with values looked up by name.
+ * {@link #compile()} pre-renders runs of static calls into blocks which are drawn as Form XObjects,
+ * so per record only placeholder text is measured and wrapped.
+ * Form field names are unique in a document, so fields are named with a prefix per record when a template
+ * with fields is drawn more than once, see {@link PDFGenerationUtils#addTemplate(CompiledTemplate, Map, String)}.
+ */
+public final class DocumentTemplate {
+  private final List<TemplateElement> elements = new ArrayList<>();
+  private final Set<String> names = new LinkedHashSet<>();
+  private final Set<String> fieldNames = new LinkedHashSet<>();
+  private float MARGIN = 25;
+  private int leading = 10;
+
+  /**
+   * To set margin of documents template is drawn in, blocks are pre-rendered with it
+   * @param MARGIN : margin
+   */
+  public void setMARGIN(float MARGIN) {
+    this.MARGIN = MARGIN;
+  }
+
+  /**
+   * To set leading of documents template is drawn in, blocks are pre-rendered with it
+   * @param leading : space between lines
+   */
+  public void setLeading(int leading) {
+    this.leading = leading;
+  }
+
+  /**
+   * To add static text
+   * @see PDFGenerationUtils#addText(String, int, boolean, PDColor, Gravity)
+   */
+  public void addText(String text, int fontSize, boolean isBold, PDColor color, Gravity gravity) {
+    addStatic(gravity != Gravity.NONE, (pdf, values) -> pdf.addText(text, fontSize, isBold, color, gravity));
+  }
+
+  /**
+   * To add static text in given font
+   * Text in embedded fonts is drawn per record, as every document embeds its own subset of font
+   * @see PDFGenerationUtils#addText(String, CachedFont, int, PDColor, Gravity)
+   */
+  public void addText(String text, CachedFont font, int fontSize, PDColor color, Gravity gravity) {
+    TemplateElement element = (pdf, values) -> pdf.addText(text, font, fontSize, color, gravity);
+    if (font.isEmbedded())
+      elements.add(element);
+    else
+      addStatic(gravity != Gravity.NONE, element);
+  }
+
+  /**
+   * To add static color text
+   * @see PDFGenerationUtils#addColorText(HashMap, int, boolean, Gravity)
+   */
+  public void addColorText(HashMap<String, PDColor> text, int fontSize, boolean isBold, Gravity gravity) {
+    HashMap<String, PDColor> copy = new LinkedHashMap<>(text);
+    addStatic(gravity != Gravity.NONE, (pdf, values) -> pdf.addColorText(copy, fontSize, isBold, gravity));
+  }
+
+  /**
+   * To add static rich text
+   * Text with runs in embedded fonts is drawn per record, as every document embeds its own subset of font
+   * @see PDFGenerationUtils#addRichText(RichText, Gravity)
+   */
+  public void addRichText(RichText text, Gravity gravity) {
+    // no run can be added once text is recorded
+    text.getText();
+    TemplateElement element = (pdf, values) -> pdf.addRichText(text, gravity);
+    if (text.hasEmbeddedFont())
+      elements.add(element);
+    else
+      addStatic(gravity != Gravity.NONE, element);
+  }
+
+  /**
+   * To add line
+   * @see PDFGenerationUtils#drawLines(int, PDColor, Gravity)
+   */
+  public void drawLines(int width, PDColor pdColor, Gravity gravity) {
+    addStatic(gravity != Gravity.NONE, (pdf, values) -> pdf.drawLines(width, pdColor, gravity));
+  }
+
+  /**
+   * To add empty line
+   * @see PDFGenerationUtils#moveToNextLine()
+   */
+  public void moveToNextLine() {
+    addStatic(true, (pdf, values) -> pdf.moveToNextLine());
+  }
+
+  /**
+   * To add rectangle
+   * @see PDFGenerationUtils#drawRectangle(int, int, PDColor, Gravity)
+   */
+  public void drawRectangle(int width, int height, PDColor color, Gravity gravity) {
+    addStatic(gravity != Gravity.NONE, (pdf, values) -> pdf.drawRectangle(width, height, color, gravity));
+  }
+
+  /**
+   * To add rounded rectangle
+   * @see PDFGenerationUtils#drawRoundedRectangle(int, int, int, boolean, PDColor, Gravity)
+   */
+  public void drawRoundedRectangle(int width, int height, int cornerRadius, boolean isToDrawOnlyTopRadius,
+                                   PDColor color, Gravity gravity) {
+    addStatic(gravity != Gravity.NONE, (pdf, values) ->
+      pdf.drawRoundedRectangle(width, height, cornerRadius, isToDrawOnlyTopRadius, color, gravity));
+  }
+
+  /**
+   * To add text whose value is given per record
+   * @param name : placeholder name
+   * @see PDFGenerationUtils#addText(String, int, boolean, PDColor, Gravity)
+   */
+  public void addPlaceholder(String name, int fontSize, boolean isBold, PDColor color, Gravity gravity) {
+    names.add(name);
+    elements.add((pdf, values) -> pdf.addText(values.get(name), fontSize, isBold, color, gravity));
+  }
+
+  /**
+   * To add text in given font whose value is given per record
+   * @param name : placeholder name
+   * @see PDFGenerationUtils#addText(String, CachedFont, int, PDColor, Gravity)
+   */
+  public void addPlaceholder(String name, CachedFont font, int fontSize, PDColor color, Gravity gravity) {
+    names.add(name);
+    elements.add((pdf, values) -> pdf.addText(values.get(name), font, fontSize, color, gravity));
+  }
+
+  /**
+   * To add image, embedded once per document
+   * @see PDFGenerationUtils#insertImage(String, int, int, Gravity)
+   */
+  public void insertImage(String imageUrl, int imgWidth, int imgHeight, Gravity gravity) {
+    elements.add((pdf, values) -> pdf.insertImage(imageUrl, imgWidth, imgHeight, gravity));
+  }
+
+  /**
+   * To add radio buttons, selected value is given per record by field name
+   * @param defaultValue : value selected when record has no value for field
+   * @see PDFGenerationUtils#addRadioButtons(LinkedHashMap, String, PDColor, String)
+   */
+  public void addRadioButtons(LinkedHashMap<String, String> buttonList, String defaultValue,
+                              PDColor pdColor, String partialName) {
+    addFieldName(partialName);
+    LinkedHashMap<String, String> copy = new LinkedHashMap<>(buttonList);
+    elements.add((pdf, values) ->
+      pdf.addRadioButtons(copy, values.getOrDefault(partialName, defaultValue), pdColor,
+        pdf.getTemplateFieldName(partialName)));
+  }
+
+  /**
+   * To add check box
+   * @see PDFGenerationUtils#addCheckBox(String, String, PDColor)
+   */
+  public void addCheckBox(String partialName, String defaultValue, PDColor pdColor) {
+    addFieldName(partialName);
+    elements.add((pdf, values) -> pdf.addCheckBox(pdf.getTemplateFieldName(partialName), defaultValue, pdColor));
+  }
+
+  /**
+   * To add text field, value is given per record by field name
+   * @param defaultValue : value when record has no value for field
+   * @see PDFGenerationUtils#addTextField(String, String, int, int)
+   */
+  public void addTextField(String partialName, String defaultValue, int width, int height) {
+    addFieldName(partialName);
+    elements.add((pdf, values) ->
+      pdf.addTextField(pdf.getTemplateFieldName(partialName), values.getOrDefault(partialName, defaultValue),
+        width, height));
+  }
+
+  /**
+   * To add list field, value is given per record by field name
+   * @param defaultValue : value when record has no value for field
+   * @see PDFGenerationUtils#addListField(String, String, int, int, List)
+   */
+  public void addListField(String partialName, String defaultValue, int width, int height, List<String> options) {
+    addFieldName(partialName);
+    List<String> copy = List.copyOf(options);
+    elements.add((pdf, values) ->
+      pdf.addListField(pdf.getTemplateFieldName(partialName), values.getOrDefault(partialName, defaultValue),
+        width, height, copy));
+  }
+
+  /**
+   * To compile template, pre-rendering runs of static calls
+   * A run taller than a page is split in blocks, a single call taller than a page is drawn per record
+   * @return : compiled template
+   * @throws IOException
+   */
+  public CompiledTemplate compile() throws IOException {
+    List<TemplateElement> compiled = new ArrayList<>();
+    // blocks are recorded in a document which is never saved
+    try (PDFGenerationUtils scratch = new PDFGenerationUtils(
+      System.getProperty("java.io.tmpdir") + File.separator + "template", "template.pdf")) {
+      scratch.setMARGIN(MARGIN);
+      scratch.setLeading(leading);
+      int start = 0;
+      while (start < elements.size()) {
+        if (!elements.get(start).isStatic()) {
+          compiled.add(elements.get(start++));
+          continue;
+        }
+        int runEnd = start;
+        while (runEnd < elements.size() && elements.get(runEnd).isStatic())
+          runEnd++;
+
+        // longest part of run fitting in a page
+        TemplateBlock block = null;
+        int blockEnd = start;
+        int low = start + 1;
+        int high = runEnd;
+        while (low <= high) {
+          int middle = (low + high) >>> 1;
+          TemplateBlock candidate = scratch.recordTemplateBlock(elements.subList(start, middle));
+          if (candidate != null) {
+            block = candidate;
+            blockEnd = middle;
+            low = middle + 1;
+          } else {
+            high = middle - 1;
+          }
+        }
+        if (block == null) {
+          compiled.add(elements.get(start++));
+        } else {
+          compiled.add(block);
+          start = blockEnd;
+        }
+      }
+    }
+    return new CompiledTemplate(compiled, names, fieldNames, MARGIN, leading);
+  }
+
+  private void addStatic(boolean resetsX, TemplateElement element) {
+    elements.add(new StaticElement(element, resetsX));
+  }
+
+  private void addFieldName(String partialName) {
+    if (!fieldNames.add(partialName))
+      throw new IllegalArgumentException("Duplicate field name: " + partialName);
+    names.add(partialName);
+  }
+
+  /**
+   * Element drawn same for every record
+   */
+  private static final class StaticElement implements TemplateElement {
+    private final TemplateElement element;
+    private final boolean resetsX;
+
+    StaticElement(TemplateElement element, boolean resetsX) {
+      this.element = element;
+      this.resetsX = resetsX;
+    }
+
+    @Override
+    public void draw(PDFGenerationUtils pdfGenerationUtils, Map<String, String> values) throws IOException {
+      element.draw(pdfGenerationUtils, values);
+    }
+
+    @Override
+    public boolean isStatic() {
+      return true;
+    }
+
+    @Override
+    public boolean resetsX() {
+      return resetsX;
+    }
+  }
+}
@@ -81,7 +81,7 @@ public class Example {
     for (int i = 0; i < 10; i++) {
       optionList.add("Option "+i);
     }
-    pdfGenerationUtils.addListField("tx1","", 500, 20,
+    pdfGenerationUtils.addListField("ls1","", 500, 20,
       optionList);
 
     pdfGenerationUtils.addText("Hello 9999999", 25, true,
@@ -0,0 +1,87 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Top level fields of a document form, indexed by name.
+ *
+ * Fields are appended straight to the /Fields array of the form, instead of going through
+ * {@link PDAcroForm#getFields()} which wraps every existing field on each call.
+ * Field names have to be unique, a field added with a name already in use is rejected.
+ */
+final class FieldRegistry {
+  private final COSArray fields = new COSArray();
+  private final Map<String, PDField> fieldsByName = new HashMap<>();
+
+  /**
+   * @param acroForm : form whose fields are kept, its existing fields are replaced
+   */
+  FieldRegistry(PDAcroForm acroForm) {
+    acroForm.getCOSObject().setItem(COSName.FIELDS, fields);
+  }
+
+  /**
+   * To check that a name is not used yet, before field is drawn
+   * @param partialName : field name
+   * @throws IllegalArgumentException : if name is empty or already used
+   */
+  void checkName(String partialName) {
+    if (partialName == null || partialName.isEmpty())
+      throw new IllegalArgumentException("Field name is empty");
+    if (fieldsByName.containsKey(partialName))
+      throw new IllegalArgumentException("Duplicate field name: " + partialName);
+  }
+
+  /**
+   * To add a field to form
+   * @param field : field with its name set
+   * @throws IllegalArgumentException : if name is empty or already used
+   */
+  void add(PDField field) {
+    checkName(field.getPartialName());
+    fieldsByName.put(field.getPartialName(), field);
+    fields.add(field.getCOSObject());
+  }
+
+  /**
+   * To add fields to form, nothing is added if any name is empty or already used
+   * @param newFields : fields with their names set
+   * @throws IllegalArgumentException : if a name is empty or already used
+   */
+  void addAll(Collection<? extends PDField> newFields) {
+    Set<String> names = new HashSet<>();
+    for (PDField field : newFields) {
+      checkName(field.getPartialName());
+      if (!names.add(field.getPartialName()))
+        throw new IllegalArgumentException("Duplicate field name: " + field.getPartialName());
+    }
+    for (PDField field : newFields) {
+      fieldsByName.put(field.getPartialName(), field);
+      fields.add(field.getCOSObject());
+    }
+  }
+
+  /**
+   * @param partialName : field name
+   * @return : field, null if there is no field with this name
+   */
+  PDField get(String partialName) {
+    return fieldsByName.get(partialName);
+  }
+
+  /**
+   * @return : number of fields
+   */
+  int size() {
+    return fieldsByName.size();
+  }
+}
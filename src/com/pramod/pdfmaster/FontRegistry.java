@@ -0,0 +1,107 @@
+package com.pramod.pdfmaster;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide registry of standard 14 fonts and of TrueType fonts embedded in documents.
+ * Each font is loaded once on first use and shared by all documents and threads.
+ */
+public final class FontRegistry {
+  private static final Map<Standard14Fonts.FontName, CachedFont> FONTS = new ConcurrentHashMap<>();
+  // embedded fonts by canonical file path
+  private static final Map<String, CachedFont> EMBEDDED_FONTS = new ConcurrentHashMap<>();
+
+  private FontRegistry() {
+  }
+
+  /**
+   * To get cached font, loading it on first use
+   * @param fontName : standard 14 font name
+   * @return : cached font
+   */
+  public static CachedFont get(Standard14Fonts.FontName fontName) {
+    return FONTS.computeIfAbsent(fontName, CachedFont::new);
+  }
+
+  /**
+   * To get regular or bold helvetica
+   * @param isBold : to get bold font
+   * @return : cached font
+   */
+  public static CachedFont getHelvetica(boolean isBold) {
+    return get(isBold ? Standard14Fonts.FontName.HELVETICA_BOLD : Standard14Fonts.FontName.HELVETICA);
+  }
+
+  /**
+   * To get font embedded in documents, parsing it on first use
+   * File is read once through a memory mapped channel, parsed tables and glyph widths are then shared
+   * by all documents and threads, and every document embeds a subset with only the glyphs it draws
+   * @param path : TrueType or OpenType font file with TrueType outlines
+   * @return : cached font
+   * @throws IOException : if file can not be read or parsed
+   */
+  public static CachedFont load(String path) throws IOException {
+    String key = new File(path).getCanonicalPath();
+    CachedFont font = EMBEDDED_FONTS.get(key);
+    if (font != null)
+      return font;
+    try {
+      return EMBEDDED_FONTS.computeIfAbsent(key, FontRegistry::parse);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static CachedFont parse(String path) {
+    try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new CachedFont(new TTFParser().parse(new BufferInputStream(buffer)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Input stream reading a byte buffer
+   */
+  private static final class BufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0)
+        return 0;
+      if (!buffer.hasRemaining())
+        return -1;
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
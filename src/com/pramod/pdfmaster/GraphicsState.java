@@ -0,0 +1,135 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Content stream of a page with the graphics state it was left in.
+ *
+ * Fill colour, stroke colour, font, font size and line width are tracked, and operators setting
+ * the value already in effect are not written. State starts unknown, as a stream can be drawn inside
+ * another one, eg. as a form of a template block, and is kept across text objects and saved states.
+ * Colours are compared by reference first, which is the common case as {@link PDFGenerationUtils#getColor(float[])}
+ * interns them.
+ */
+final class GraphicsState {
+  private final PDPageContentStream contentStream;
+  private final Deque<State> savedStates = new ArrayDeque<>();
+  private State state = new State();
+
+  GraphicsState(PDPageContentStream contentStream) {
+    this.contentStream = contentStream;
+  }
+
+  /**
+   * @return : content stream, for operators which do not change tracked state
+   */
+  PDPageContentStream getContentStream() {
+    return contentStream;
+  }
+
+  /**
+   * To set fill colour, if not set already
+   * @param color : colour
+   * @throws IOException
+   */
+  void setNonStrokingColor(PDColor color) throws IOException {
+    if (isSameColor(color, state.fillColor))
+      return;
+    contentStream.setNonStrokingColor(color);
+    state.fillColor = color;
+  }
+
+  /**
+   * To set stroke colour, if not set already
+   * @param color : colour
+   * @throws IOException
+   */
+  void setStrokingColor(PDColor color) throws IOException {
+    if (isSameColor(color, state.strokeColor))
+      return;
+    contentStream.setStrokingColor(color);
+    state.strokeColor = color;
+  }
+
+  /**
+   * To set font and font size, if not set already
+   * @param font : font
+   * @param fontSize : font size
+   * @throws IOException
+   */
+  void setFont(PDFont font, float fontSize) throws IOException {
+    if (font == state.font && fontSize == state.fontSize)
+      return;
+    contentStream.setFont(font, fontSize);
+    state.font = font;
+    state.fontSize = fontSize;
+  }
+
+  /**
+   * To set line width, if not set already
+   * @param lineWidth : line width
+   * @throws IOException
+   */
+  void setLineWidth(float lineWidth) throws IOException {
+    if (lineWidth == state.lineWidth)
+      return;
+    contentStream.setLineWidth(lineWidth);
+    state.lineWidth = lineWidth;
+  }
+
+  /**
+   * To save graphics state, q operator
+   * @throws IOException
+   */
+  void save() throws IOException {
+    contentStream.saveGraphicsState();
+    savedStates.push(state);
+    state = new State(state);
+  }
+
+  /**
+   * To restore last saved graphics state, Q operator
+   * @throws IOException
+   */
+  void restore() throws IOException {
+    contentStream.restoreGraphicsState();
+    state = savedStates.pop();
+  }
+
+  /**
+   * @return : whether colours have same colour space and components
+   */
+  static boolean isSameColor(PDColor color, PDColor other) {
+    return color == other || color != null && other != null && color.getColorSpace() == other.getColorSpace()
+      && Arrays.equals(color.getComponents(), other.getComponents());
+  }
+
+  /**
+   * Tracked values, null or NaN while unknown
+   */
+  private static final class State {
+    private PDColor fillColor;
+    private PDColor strokeColor;
+    private PDFont font;
+    private float fontSize = Float.NaN;
+    private float lineWidth = Float.NaN;
+
+    State() {
+    }
+
+    State(State state) {
+      fillColor = state.fillColor;
+      strokeColor = state.strokeColor;
+      font = state.font;
+      fontSize = state.fontSize;
+      lineWidth = state.lineWidth;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.pramod.pdfmaster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+
+/**
+ * On disk cache of downloaded images, shared by all documents and by workers using the same folder.
+ *
+ * Entries are named by SHA-256 digest of image url and hold the downloaded bytes as they are.
+ * Files are first written to a temp file and then atomically renamed, so concurrent workers
+ * never see partial entries. Entries older than revalidation interval are revalidated with
+ * ETag / Last-Modified of the server, and least recently used entries are deleted once total
+ * size goes above the limit. Entry being returned is never deleted, so an image larger than the limit
+ * is still returned, and an entry deleted by another cache on the same folder is downloaded again.
+ */
+public class ImageCache {
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+  public static final long DEFAULT_REVALIDATE_AFTER_MILLIS = 60 * 60 * 1000L;
+
+  private static final String DATA_SUFFIX = ".img";
+  private static final String META_SUFFIX = ".meta";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final String ETAG = "etag";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String VALIDATED_AT = "validatedAt";
+  private static final int TIMEOUT_MILLIS = 30 * 1000;
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final File folder;
+  private final long maxBytes;
+  private final long revalidateAfterMillis;
+
+  /**
+   * @param folder : folder to keep cached images in
+   * @param maxBytes : max total size of cached images
+   * @param revalidateAfterMillis : age after which entry is revalidated with server
+   */
+  public ImageCache(File folder, long maxBytes, long revalidateAfterMillis) {
+    this.folder = folder;
+    this.maxBytes = maxBytes;
+    this.revalidateAfterMillis = revalidateAfterMillis;
+  }
+
+  /**
+   * To get local file of an image url, downloading it if it is not cached or has changed
+   * Stale entry is used if server can not be reached
+   * @param imageUrl : http(s) url of image
+   * @return : cached file, null if image could not be downloaded
+   */
+  public File get(String imageUrl) {
+    String key = digest(imageUrl);
+    File data = new File(folder, key + DATA_SUFFIX);
+    File meta = new File(folder, key + META_SUFFIX);
+    if (!folder.exists())
+      folder.mkdirs();
+    // entry can be evicted by another cache on the same folder before it is returned
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      File file = fetch(imageUrl, key, data, meta);
+      if (file == null || file.exists())
+        return file;
+    }
+    return null;
+  }
+
+  private File fetch(String imageUrl, String key, File data, File meta) {
+    Properties properties = readMeta(meta);
+    if (data.exists() && properties != null) {
+      long validatedAt = Long.parseLong(properties.getProperty(VALIDATED_AT, "0"));
+      if (System.currentTimeMillis() - validatedAt < revalidateAfterMillis) {
+        touch(data);
+        return data;
+      }
+    } else {
+      properties = null;
+    }
+
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(imageUrl).openConnection();
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+      if (properties != null) {
+        if (properties.getProperty(ETAG) != null)
+          connection.setRequestProperty("If-None-Match", properties.getProperty(ETAG));
+        if (properties.getProperty(LAST_MODIFIED) != null)
+          connection.setRequestProperty("If-Modified-Since", properties.getProperty(LAST_MODIFIED));
+      }
+
+      int responseCode = connection.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && properties != null) {
+        connection.disconnect();
+        properties.setProperty(VALIDATED_AT, String.valueOf(System.currentTimeMillis()));
+        writeMeta(meta, properties);
+        touch(data);
+        return data;
+      }
+      if (responseCode != HttpURLConnection.HTTP_OK) {
+        connection.disconnect();
+        return properties != null ? data : null;
+      }
+
+      Path temp = Files.createTempFile(folder.toPath(), key, TEMP_SUFFIX);
+      try (InputStream inputStream = connection.getInputStream()) {
+        Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, data.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+      writeMeta(meta, createMeta(imageUrl, connection));
+      evict(key);
+      return data;
+    } catch (IOException | ClassCastException e) {
+      e.printStackTrace();
+      return properties != null ? data : null;
+    }
+  }
+
+  /**
+   * To delete least recently used entries till total size is within limit
+   */
+  public void evict() {
+    evict(null);
+  }
+
+  /**
+   * @param keep : key of entry which is not deleted, null to allow deleting all entries
+   */
+  private synchronized void evict(String keep) {
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(DATA_SUFFIX));
+    if (files == null)
+      return;
+    long totalBytes = 0;
+    long[] lastUsed = new long[files.length];
+    for (int i = 0; i < files.length; i++) {
+      totalBytes += files[i].length();
+      lastUsed[i] = files[i].lastModified();
+    }
+    if (totalBytes <= maxBytes)
+      return;
+
+    Integer[] order = new Integer[files.length];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+    for (int i = 0; i < order.length && totalBytes > maxBytes; i++) {
+      File file = files[order[i]];
+      if (keep != null && file.getName().equals(keep + DATA_SUFFIX))
+        continue;
+      long length = file.length();
+      if (file.delete()) {
+        totalBytes -= length;
+        String name = file.getName();
+        new File(folder, name.substring(0, name.length() - DATA_SUFFIX.length()) + META_SUFFIX).delete();
+      }
+    }
+  }
+
+  private Properties createMeta(String imageUrl, URLConnection connection) {
+    Properties properties = new Properties();
+    properties.setProperty("url", imageUrl);
+    properties.setProperty(VALIDATED_AT, String.valueOf(System.currentTimeMillis()));
+    String etag = connection.getHeaderField("ETag");
+    if (etag != null)
+      properties.setProperty(ETAG, etag);
+    String lastModified = connection.getHeaderField("Last-Modified");
+    if (lastModified != null)
+      properties.setProperty(LAST_MODIFIED, lastModified);
+    return properties;
+  }
+
+  private Properties readMeta(File meta) {
+    if (!meta.exists())
+      return null;
+    Properties properties = new Properties();
+    try (InputStream inputStream = Files.newInputStream(meta.toPath())) {
+      properties.load(inputStream);
+      return properties;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void writeMeta(File meta, Properties properties) throws IOException {
+    Path temp = Files.createTempFile(folder.toPath(), meta.getName(), TEMP_SUFFIX);
+    try {
+      try (OutputStream outputStream = Files.newOutputStream(temp)) {
+        properties.store(outputStream, null);
+      }
+      Files.move(temp, meta.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private void touch(File file) {
+    file.setLastModified(System.currentTimeMillis());
+  }
+
+  private static String digest(String text) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+      StringBuilder builder = new StringBuilder(hash.length * 2);
+      for (byte b : hash)
+        builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      return builder.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
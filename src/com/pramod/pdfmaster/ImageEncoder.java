@@ -0,0 +1,213 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDIndexed;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes decoded images of a document, choosing encoder by image content.
+ *
+ * Choice is made by an analysis pass over at most 16K sampled pixel pairs: transparency, number of
+ * colours and how neighbouring pixels differ. Photos change smoothly between most neighbours,
+ * graphics have large flat areas and sharp edges. Choice is cached per image source,
+ * so an image drawn with several sizes is analysed once.
+ */
+final class ImageEncoder {
+  private static final int MAX_SAMPLES = 16 * 1024;
+  private static final int MAX_PALETTE_SIZE = 256;
+  // sum of absolute RGB differences above which neighbours are taken as an edge
+  private static final int EDGE_THRESHOLD = 96;
+
+  private final Map<String, ImageEncoding> decisions = new HashMap<>();
+
+  /**
+   * To encode image in document
+   * @param document : document to embed image in
+   * @param source : image url or file path, to cache encoder choice by
+   * @param image : decoded image
+   * @param encoding : encoding to use, AUTO to choose by image content
+   * @param quality : jpeg quality
+   * @return : image object
+   * @throws IOException
+   */
+  PDImageXObject encode(PDDocument document, String source, BufferedImage image,
+                        ImageEncoding encoding, float quality) throws IOException {
+    if (encoding == ImageEncoding.AUTO)
+      encoding = decisions.computeIfAbsent(source, key -> analyse(image));
+
+    if (encoding == ImageEncoding.JPEG)
+      return JPEGFactory.createFromImage(document, image, quality);
+    if (encoding == ImageEncoding.INDEXED) {
+      PDImageXObject indexedImage = createIndexedImage(document, image);
+      if (indexedImage != null)
+        return indexedImage;
+    }
+    return LosslessFactory.createFromImage(document, image);
+  }
+
+  /**
+   * To choose encoding by sampled pixels
+   * @param image : decoded image
+   * @return : JPEG, LOSSLESS or INDEXED
+   */
+  static ImageEncoding analyse(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int step = Math.max(1, (int) Math.sqrt((double) width * height / MAX_SAMPLES));
+    ColourTable colours = new ColourTable();
+    long pairs = 0;
+    long flat = 0;
+    long edges = 0;
+
+    // every sample is a pixel and its right neighbour
+    for (int y = 0; y < height; y += step) {
+      for (int x = 0; x + 1 < width; x += step) {
+        int argb = image.getRGB(x, y);
+        if ((argb >>> 24) != 0xFF)
+          return ImageEncoding.LOSSLESS;
+        int difference = difference(argb, image.getRGB(x + 1, y));
+        if (colours.size() <= MAX_PALETTE_SIZE)
+          colours.indexOf(argb);
+        pairs++;
+        if (difference == 0)
+          flat++;
+        else if (difference > EDGE_THRESHOLD)
+          edges++;
+      }
+    }
+
+    if (colours.size() <= MAX_PALETTE_SIZE)
+      return ImageEncoding.INDEXED;
+    // graphics: mostly flat, or flat areas split by sharp edges (text, lines)
+    if (flat * 2 >= pairs || (flat + edges) * 4 >= pairs * 3)
+      return ImageEncoding.LOSSLESS;
+    return ImageEncoding.JPEG;
+  }
+
+  /**
+   * To encode opaque image having at most 256 colours as Flate compressed indexed colour
+   * @param document : document to embed image in
+   * @param image : decoded image
+   * @return : image object, null if image has more colours or transparency
+   * @throws IOException
+   */
+  static PDImageXObject createIndexedImage(PDDocument document, BufferedImage image) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    byte[] indexes = new byte[width * height];
+    int[] row = new int[width];
+    ColourTable colours = new ColourTable();
+    int lastColour = 0;
+    int lastIndex = -1;
+    for (int y = 0; y < height; y++) {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      for (int x = 0; x < width; x++) {
+        int argb = row[x];
+        if (argb != lastColour || lastIndex < 0) {
+          if ((argb >>> 24) != 0xFF)
+            return null;
+          lastColour = argb;
+          lastIndex = colours.indexOf(argb);
+          if (lastIndex >= MAX_PALETTE_SIZE)
+            return null;
+        }
+        indexes[y * width + x] = (byte) lastIndex;
+      }
+    }
+
+    int paletteSize = colours.size();
+    int bitsPerComponent = paletteSize <= 2 ? 1 : paletteSize <= 4 ? 2 : paletteSize <= 16 ? 4 : 8;
+    int rowBytes = (width * bitsPerComponent + 7) / 8;
+    byte[] packedRow = new byte[rowBytes];
+    ByteArrayOutputStream data = new ByteArrayOutputStream(rowBytes * height / 4 + 64);
+    try (DeflaterOutputStream outputStream = new DeflaterOutputStream(data)) {
+      for (int y = 0; y < height; y++) {
+        Arrays.fill(packedRow, (byte) 0);
+        for (int x = 0; x < width; x++) {
+          int bit = x * bitsPerComponent;
+          packedRow[bit >> 3] |= (indexes[y * width + x] & 0xFF) << (8 - bitsPerComponent - (bit & 7));
+        }
+        outputStream.write(packedRow);
+      }
+    }
+
+    byte[] lookup = new byte[paletteSize * 3];
+    for (int i = 0; i < paletteSize; i++) {
+      int rgb = colours.get(i);
+      lookup[i * 3] = (byte) (rgb >> 16);
+      lookup[i * 3 + 1] = (byte) (rgb >> 8);
+      lookup[i * 3 + 2] = (byte) rgb;
+    }
+    COSArray colourSpace = new COSArray();
+    colourSpace.add(COSName.INDEXED);
+    colourSpace.add(COSName.DEVICERGB);
+    colourSpace.add(COSInteger.get(paletteSize - 1));
+    colourSpace.add(new COSString(lookup));
+
+    return new PDImageXObject(document, new ByteArrayInputStream(data.toByteArray()), COSName.FLATE_DECODE,
+      width, height, bitsPerComponent, new PDIndexed(colourSpace));
+  }
+
+  private static int difference(int argb1, int argb2) {
+    return Math.abs(((argb1 >> 16) & 0xFF) - ((argb2 >> 16) & 0xFF))
+      + Math.abs(((argb1 >> 8) & 0xFF) - ((argb2 >> 8) & 0xFF))
+      + Math.abs((argb1 & 0xFF) - (argb2 & 0xFF));
+  }
+
+  /**
+   * Open addressing table of colours, indexed in order they were added
+   * Stops growing once it has more than 256 colours
+   */
+  private static final class ColourTable {
+    private static final int CAPACITY = 1024;
+    private final int[] keys = new int[CAPACITY];
+    private final short[] values = new short[CAPACITY];
+    private final boolean[] used = new boolean[CAPACITY];
+    private final int[] colours = new int[MAX_PALETTE_SIZE + 1];
+    private int size;
+
+    /**
+     * To get index of colour, adding it if it is new
+     * @param argb : colour
+     * @return : index of colour, MAX_PALETTE_SIZE once table is full
+     */
+    int indexOf(int argb) {
+      int slot = (argb * 0x9E3779B9) >>> 22;
+      while (used[slot]) {
+        if (keys[slot] == argb)
+          return values[slot];
+        slot = (slot + 1) & (CAPACITY - 1);
+      }
+      if (size > MAX_PALETTE_SIZE)
+        return MAX_PALETTE_SIZE;
+      used[slot] = true;
+      keys[slot] = argb;
+      values[slot] = (short) size;
+      colours[size] = argb;
+      return size++;
+    }
+
+    int get(int index) {
+      return colours[index];
+    }
+
+    int size() {
+      return size;
+    }
+  }
+}
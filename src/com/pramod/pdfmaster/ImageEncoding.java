@@ -0,0 +1,13 @@
+package com.pramod.pdfmaster;
+
+/**
+ * How decoded images are encoded in pdf
+ * AUTO     : photos are encoded as jpeg, graphics (logos, charts, screenshots) and images with
+ *            transparency losslessly, as indexed colour when they have at most 256 colours
+ * JPEG     : every image is encoded as jpeg
+ * LOSSLESS : every image is Flate compressed with PNG predictors
+ * INDEXED  : images with at most 256 colours are Flate compressed as indexed colour, others losslessly
+ */
+public enum ImageEncoding {
+  AUTO, JPEG, LOSSLESS, INDEXED
+}
@@ -0,0 +1,67 @@
+package com.pramod.pdfmaster;
+
+import java.util.Objects;
+
+/**
+ * Key of an embedded image, made of image source, size it was resampled to and parameters it was encoded with.
+ * Same image drawn again with same parameters reuses the embedded image object.
+ */
+final class ImageKey {
+  private final String source;
+  private final Float quality;
+  private final ImageEncoding encoding;
+  private final int width;
+  private final int height;
+
+  /**
+   * @param source : image url or file path
+   * @param quality : jpeg quality image is encoded with, null if jpeg is kept as it is
+   * @param encoding : encoding of decoded image
+   * @param width : max width in pixels image is resampled to, 0 if it is not resampled
+   * @param height : max height in pixels image is resampled to, 0 if it is not resampled
+   */
+  ImageKey(String source, Float quality, ImageEncoding encoding, int width, int height) {
+    this.source = source;
+    this.quality = quality;
+    this.encoding = encoding;
+    this.width = width;
+    this.height = height;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + source.hashCode();
+    result = prime * result + Objects.hashCode(quality);
+    result = prime * result + encoding.hashCode();
+    result = prime * result + width;
+    result = prime * result + height;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    ImageKey other = (ImageKey) obj;
+    if (!source.equals(other.source))
+      return false;
+    if (!Objects.equals(quality, other.quality))
+      return false;
+    if (encoding != other.encoding)
+      return false;
+    if (width != other.width || height != other.height)
+      return false;
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "ImageKey [source=" + source + ", quality=" + quality + ", encoding=" + encoding + ", width=" + width + ", height=" + height + "]";
+  }
+}
@@ -0,0 +1,147 @@
+package com.pramod.pdfmaster;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads and decodes images of a document, either on demand or prefetched in background.
+ * Jpegs which are going to be embedded as they are, are only fetched and never decoded.
+ *
+ * Prefetched images are fetched and decoded concurrently, at most concurrency images at a time,
+ * on virtual threads when the runtime supports them and on a fixed pool of daemon threads otherwise.
+ * Getting an image only waits for that image.
+ */
+public class ImageLoader {
+  public static final int DEFAULT_CONCURRENCY = 16;
+
+  private final ImageCache imageCache;
+  private final Semaphore permits;
+  private final int concurrency;
+  private final boolean keepJpeg;
+  private final Map<String, Future<LoadedImage>> prefetched = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+
+  /**
+   * @param imageCache : cache to download http images through
+   * @param concurrency : max number of images fetched at the same time
+   * @param keepJpeg : whether jpegs are embedded as they are, so they need not be decoded
+   */
+  public ImageLoader(ImageCache imageCache, int concurrency, boolean keepJpeg) {
+    this.imageCache = imageCache;
+    this.concurrency = concurrency;
+    this.keepJpeg = keepJpeg;
+    this.permits = new Semaphore(concurrency);
+  }
+
+  /**
+   * To start fetching and decoding images in background
+   * @param imageUrls : image urls or file paths document will need
+   */
+  public synchronized void prefetch(Collection<String> imageUrls) {
+    if (executor == null)
+      executor = createExecutor(concurrency);
+    for (String imageUrl : imageUrls) {
+      if (imageUrl == null || imageUrl.isEmpty())
+        continue;
+      prefetched.computeIfAbsent(imageUrl, url -> executor.submit(() -> {
+        permits.acquire();
+        try {
+          return load(url);
+        } finally {
+          permits.release();
+        }
+      }));
+    }
+  }
+
+  /**
+   * To get fetched image, waiting for it if it is being prefetched
+   * @param imageUrl : image url or file path
+   * @return : fetched image, null if it could not be fetched or decoded
+   * @throws IOException
+   */
+  LoadedImage get(String imageUrl) throws IOException {
+    Future<LoadedImage> future = prefetched.remove(imageUrl);
+    if (future == null)
+      return load(imageUrl);
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      e.getCause().printStackTrace();
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * To stop background threads and drop images which were prefetched but never used
+   */
+  public synchronized void close() {
+    if (executor != null)
+      executor.shutdownNow();
+    executor = null;
+    prefetched.clear();
+  }
+
+  private LoadedImage load(String imageUrl) throws IOException {
+    PdfEvents.ImageFetch event = new PdfEvents.ImageFetch();
+    event.begin();
+    File file;
+    if (imageUrl.contains("http"))
+      file = imageCache.get(imageUrl);
+    else
+      file = new File(imageUrl);
+    if (event.shouldCommit()) {
+      event.source = imageUrl;
+      event.found = file != null && file.isFile();
+      event.bytes = event.found ? file.length() : 0;
+      event.commit();
+    }
+    if (file == null)
+      return null;
+    try {
+      return read(file);
+    } catch (IOException e) {
+      if (file.exists() || !imageUrl.contains("http"))
+        throw e;
+      // cached file was evicted by another document or worker before it was read, it is fetched again
+      file = imageCache.get(imageUrl);
+      return file == null ? null : read(file);
+    }
+  }
+
+  private LoadedImage read(File file) throws IOException {
+    JpegImage jpeg = keepJpeg ? JpegImage.read(file) : null;
+    if (jpeg != null)
+      return new LoadedImage(file, jpeg, null);
+    BufferedImage image = LoadedImage.decode(file);
+    if (image == null)
+      return null;
+    return new LoadedImage(file, null, image);
+  }
+
+  private static ExecutorService createExecutor(int concurrency) {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(concurrency, runnable -> {
+        Thread thread = new Thread(runnable, "pdf-image-prefetch");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Jpeg file which can be embedded in pdf as it is, with DCTDecode filter.
+ *
+ * Only the frame header is parsed (through a memory mapped file), the image is never decoded.
+ * Baseline, extended and progressive 8 bit gray or colour jpegs are accepted,
+ * other jpegs (cmyk, 12 bit, lossless, arithmetic coded) have to be re-encoded.
+ */
+final class JpegImage {
+  private final File file;
+  private final int width;
+  private final int height;
+  private final int components;
+
+  private JpegImage(File file, int width, int height, int components) {
+    this.file = file;
+    this.width = width;
+    this.height = height;
+    this.components = components;
+  }
+
+  /**
+   * To read jpeg frame header of a file
+   * @param file : image file
+   * @return : jpeg image, null if file is not a jpeg which can be embedded as it is
+   * @throws IOException
+   */
+  static JpegImage read(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < 4)
+        return null;
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if ((buffer.get(0) & 0xFF) != 0xFF || (buffer.get(1) & 0xFF) != 0xD8)
+        return null;
+
+      int position = 2;
+      while (position + 4 <= size) {
+        if ((buffer.get(position) & 0xFF) != 0xFF)
+          return null;
+        int marker = buffer.get(position + 1) & 0xFF;
+        if (marker == 0xFF) {
+          // fill byte
+          position++;
+          continue;
+        }
+        if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+          // markers without length
+          position += 2;
+          continue;
+        }
+        if (marker == 0xDA || marker == 0xD9)
+          return null;
+
+        int length = buffer.getShort(position + 2) & 0xFFFF;
+        if (marker == 0xC0 || marker == 0xC1 || marker == 0xC2) {
+          if (position + 10 > size)
+            return null;
+          int precision = buffer.get(position + 4) & 0xFF;
+          int height = buffer.getShort(position + 5) & 0xFFFF;
+          int width = buffer.getShort(position + 7) & 0xFFFF;
+          int components = buffer.get(position + 9) & 0xFF;
+          if (precision != 8 || width == 0 || height == 0 || (components != 1 && components != 3))
+            return null;
+          return new JpegImage(file, width, height, components);
+        }
+        if (marker >= 0xC3 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC)
+          return null;
+        position += 2 + length;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * @return : image width in pixels
+   */
+  int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return : image height in pixels
+   */
+  int getHeight() {
+    return height;
+  }
+
+  /**
+   * To embed jpeg data in document without decoding it
+   * @param document : document to embed image in
+   * @return : image object
+   * @throws IOException
+   */
+  PDImageXObject embed(PDDocument document) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+         InputStream inputStream = Channels.newInputStream(channel)) {
+      return new PDImageXObject(document, inputStream, COSName.DCT_DECODE, width, height, 8,
+        components == 1 ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE);
+    }
+  }
+}
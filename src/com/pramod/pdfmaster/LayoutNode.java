@@ -0,0 +1,569 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Typed node of a {@link DisplayList}, also used by drawing methods of {@link PDFGenerationUtils}.
+ *
+ * Layout and rendering are separate steps. {@link #place} resolves where node is drawn and moves cursor
+ * past it without writing anything, {@link #render} writes operators of node at the resolved position.
+ * Nodes do not change once created, apart from text lines cached for last page width.
+ */
+abstract class LayoutNode {
+
+  /**
+   * @param pageWidth : width of drawing area
+   * @return : height which has to fit above bottom margin, else node moves to next page
+   */
+  abstract float getHeight(int pageWidth);
+
+  /**
+   * @return : whether node moves to next page when it does not fit
+   */
+  boolean canBreakPage() {
+    return true;
+  }
+
+  /**
+   * To resolve position of node and move cursor past it
+   * @param cursor : current position, moved past node
+   * @param margin : page margin
+   * @param pageWidth : width of drawing area
+   * @param leading : space between lines
+   * @return : position node is drawn at, null if node draws nothing
+   */
+  abstract Position place(Point cursor, float margin, int pageWidth, int leading);
+
+  /**
+   * To write node to content stream
+   * @param pdf : document images are embedded in
+   * @param graphics : content stream of page node was placed on, with its graphics state
+   * @param position : position returned by {@link #place}
+   * @param pageWidth : width of drawing area node was placed with
+   * @throws IOException
+   */
+  abstract void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                       int pageWidth) throws IOException;
+
+  /**
+   * To embed resources node needs in document, before pages are rendered in parallel
+   * @param pdf : document to embed resources in
+   * @throws IOException
+   */
+  void prepare(PDFGenerationUtils pdf) throws IOException {
+  }
+
+  /**
+   * @return : whether node can be rendered on other threads, see {@link PageEncoder}
+   */
+  boolean canRenderInParallel() {
+    return true;
+  }
+
+  /**
+   * To get horizontal position of content for gravity
+   * @param x : current horizontal position, kept for {@link Gravity#NONE}
+   * @param gravity : gravity
+   * @param endEdge : position content ends at for {@link Gravity#END}
+   * @param margin : page margin
+   * @param pageWidth : width of drawing area
+   * @param width : width of content
+   * @return : horizontal position
+   */
+  static int align(int x, Gravity gravity, float endEdge, float margin, int pageWidth, float width) {
+    switch (gravity){
+      case END -> x = (int) (endEdge - width);
+      case START -> x = (int) margin;
+      case CENTER -> x = (int) ((pageWidth) - width) / 2;
+    }
+    return x;
+  }
+
+  /**
+   * Wrapped text of one color
+   */
+  static final class Text extends LayoutNode {
+    private final String text;
+    private final int fontSize;
+    private final CachedFont font;
+    private final PDColor color;
+    private final Gravity gravity;
+    private TextLines lines;
+    private int linesWidth;
+
+    Text(String text, int fontSize, boolean isBold, PDColor color, Gravity gravity) {
+      this(text, FontRegistry.getHelvetica(isBold), fontSize, color, gravity);
+    }
+
+    Text(String text, CachedFont font, int fontSize, PDColor color, Gravity gravity) {
+      this.text = text == null || text.isEmpty() ? " " : text;
+      this.fontSize = fontSize;
+      this.font = font;
+      this.color = color;
+      this.gravity = gravity;
+    }
+
+    private TextLines getLines(int pageWidth) {
+      if (lines == null || linesWidth != pageWidth) {
+        lines = LineBreaker.breakLines(text, font, fontSize, pageWidth);
+        linesWidth = pageWidth;
+      }
+      return lines;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return (int) getLines(pageWidth).getHeight();
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      float textWidth = font.getStringWidth(text, fontSize);
+      cursor.x = align(cursor.x, gravity, pageWidth - margin, margin, pageWidth, textWidth);
+      Position position = new Position(cursor.x, cursor.y);
+      float y = cursor.y;
+      for (int i = 0; i < getLines(pageWidth).getLineCount(); i++)
+        y = (int) (y - 1.2f * fontSize);
+      cursor.y = (int) (y - leading);
+      return position;
+    }
+
+    @Override
+    boolean canRenderInParallel() {
+      // embedded fonts keep glyphs drawn with them for their subset
+      return !font.isEmbedded();
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDPageContentStream contentStream = graphics.getContentStream();
+      TextLines lines = getLines(pageWidth);
+      float leading = 1.2f * fontSize;
+      graphics.setNonStrokingColor(color);
+      contentStream.beginText();
+      graphics.setFont(pdf.getFont(font), fontSize);
+      contentStream.newLineAtOffset(position.getX(), position.getY());
+      for (int i = 0; i < lines.getLineCount(); i++) {
+        contentStream.showText(lines.getLine(i));
+        contentStream.newLineAtOffset(0, -leading);
+      }
+      contentStream.endText();
+    }
+  }
+
+  /**
+   * Wrapped text made of runs with their own colour, font and size
+   */
+  static final class StyledText extends LayoutNode {
+    private final RichText text;
+    private final Gravity gravity;
+    private TextLines lines;
+    private int linesWidth;
+
+    StyledText(RichText text, Gravity gravity) {
+      this.text = text;
+      this.gravity = gravity;
+      // runs are fixed and measured once node is created
+      text.getText();
+    }
+
+    private TextLines getLines(int pageWidth) {
+      if (lines == null || linesWidth != pageWidth) {
+        lines = LineBreaker.breakLines(text, pageWidth);
+        linesWidth = pageWidth;
+      }
+      return lines;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return (int) getLines(pageWidth).getHeight();
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      int fontSize = text.getLargestFontSize();
+      cursor.x = align(cursor.x, gravity, pageWidth - margin, margin, pageWidth, text.getWidth());
+      Position position = new Position(cursor.x, cursor.y);
+      float y = cursor.y;
+      for (int i = 0; i < getLines(pageWidth).getLineCount(); i++)
+        y = (int) (y - 1.2f * fontSize);
+      cursor.y = (int) (y - leading);
+      return position;
+    }
+
+    @Override
+    boolean canRenderInParallel() {
+      return !text.hasEmbeddedFont();
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDPageContentStream contentStream = graphics.getContentStream();
+      TextLines lines = getLines(pageWidth);
+      String string = lines.getText();
+      float leading = 1.2f * lines.getFontSize();
+      int run = 0;
+      contentStream.beginText();
+      contentStream.newLineAtOffset(position.getX(), position.getY());
+      for (int i = 0; i < lines.getLineCount(); i++) {
+        int start = lines.getLineStart(i);
+        int end = lines.getLineEnd(i);
+        while (text.getRunEnd(run) <= start)
+          run++;
+        for (int r = run; r < text.getRunCount() && text.getRunStart(r) < end; r++) {
+          int from = Math.max(start, text.getRunStart(r));
+          // following runs of same style are shown with one operator
+          while (r + 1 < text.getRunCount() && text.getRunStart(r + 1) < end && text.getFont(r + 1) == text.getFont(r)
+            && text.getFontSize(r + 1) == text.getFontSize(r)
+            && GraphicsState.isSameColor(text.getColor(r + 1), text.getColor(r)))
+            r++;
+          int to = Math.min(end, text.getRunEnd(r));
+          if (from == to)
+            continue;
+          // font and colour are written only where they change
+          graphics.setFont(pdf.getFont(text.getFont(r)), text.getFontSize(r));
+          graphics.setNonStrokingColor(text.getColor(r));
+          contentStream.showText(string.substring(from, to));
+        }
+        contentStream.newLineAtOffset(0, -leading);
+      }
+      contentStream.endText();
+    }
+  }
+
+  /**
+   * Row of a {@link Table}, cell text wrapped in its column
+   */
+  static final class TableRow extends LayoutNode {
+    private final Table table;
+    private final float[] widths;
+    private final TextLines[] cells;
+    private final boolean isHeader;
+    private final float height;
+
+    TableRow(Table table, float[] widths, List<String> row, boolean isHeader) {
+      this.table = table;
+      this.widths = widths;
+      this.isHeader = isHeader;
+      CachedFont font = table.getFont(isHeader);
+      int fontSize = table.getFontSize();
+      float padding = table.getPadding();
+      cells = new TextLines[widths.length];
+      int lineCount = 1;
+      for (int column = 0; column < widths.length; column++) {
+        String text = column < row.size() && row.get(column) != null ? row.get(column) : "";
+        cells[column] = LineBreaker.breakLines(text, font, fontSize, widths[column] - 2 * padding);
+        lineCount = Math.max(lineCount, cells[column].getLineCount());
+      }
+      height = lineCount * 1.2f * fontSize + 2 * padding;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return height;
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      cursor.x = (int) margin;
+      Position position = new Position(cursor.x, cursor.y);
+      cursor.y = (int) (cursor.y - height);
+      return position;
+    }
+
+    @Override
+    boolean canRenderInParallel() {
+      return !table.getFont(isHeader).isEmbedded();
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDPageContentStream contentStream = graphics.getContentStream();
+      float left = position.getX();
+      float top = position.getY();
+      float bottom = top - height;
+      float right = left;
+      for (float width : widths)
+        right += width;
+      if (isHeader && table.getHeaderColor() != null) {
+        graphics.setNonStrokingColor(table.getHeaderColor());
+        contentStream.addRect(left, bottom, right - left, height);
+        contentStream.fill();
+      }
+
+      int fontSize = table.getFontSize();
+      float padding = table.getPadding();
+      graphics.setNonStrokingColor(table.getTextColor());
+      contentStream.beginText();
+      graphics.setFont(pdf.getFont(table.getFont(isHeader)), fontSize);
+      // lines are positioned relative to start of previous line
+      float lineX = 0;
+      float lineY = 0;
+      float cellLeft = left;
+      for (int column = 0; column < cells.length; column++) {
+        TextLines lines = cells[column];
+        float baseline = top - padding - fontSize;
+        for (int i = 0; i < lines.getLineCount(); i++) {
+          float x = switch (table.getGravity(column)) {
+            case END -> cellLeft + widths[column] - padding - lines.getLineWidth(i);
+            case CENTER -> cellLeft + (widths[column] - lines.getLineWidth(i)) / 2;
+            default -> cellLeft + padding;
+          };
+          contentStream.newLineAtOffset(x - lineX, baseline - lineY);
+          contentStream.showText(lines.getLine(i));
+          lineX = x;
+          lineY = baseline;
+          baseline -= 1.2f * fontSize;
+        }
+        cellLeft += widths[column];
+      }
+      contentStream.endText();
+
+      if (table.getBorderColor() != null) {
+        graphics.setStrokingColor(table.getBorderColor());
+        contentStream.addRect(left, bottom, right - left, height);
+        float x = left;
+        for (int column = 0; column < widths.length - 1; column++) {
+          x += widths[column];
+          contentStream.moveTo(x, top);
+          contentStream.lineTo(x, bottom);
+        }
+        contentStream.stroke();
+      }
+    }
+  }
+
+  /**
+   * Horizontal line
+   */
+  static final class Line extends LayoutNode {
+    private final int width;
+    private final PDColor color;
+    private final Gravity gravity;
+
+    Line(int width, PDColor color, Gravity gravity) {
+      this.width = width;
+      this.color = color;
+      this.gravity = gravity;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return 0;
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      int y = cursor.y;
+      cursor.x = align(cursor.x, gravity, pageWidth + margin, margin, pageWidth, width);
+      Position position = new Position(cursor.x, y);
+      cursor.x = cursor.x + width;
+      cursor.y = y - 2*leading;
+      return position;
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDPageContentStream contentStream = graphics.getContentStream();
+      graphics.setStrokingColor(color);
+      contentStream.moveTo(position.getX(), position.getY());
+      contentStream.lineTo(position.getX() + width, position.getY());
+      contentStream.stroke();
+    }
+  }
+
+  /**
+   * Empty line, never moves to next page by itself
+   */
+  static final class NextLine extends LayoutNode {
+    static final NextLine INSTANCE = new NextLine();
+
+    private NextLine() {
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return 0;
+    }
+
+    @Override
+    boolean canBreakPage() {
+      return false;
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      cursor.x = (int) margin;
+      cursor.y = cursor.y - leading;
+      return null;
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position, int pageWidth) {
+    }
+  }
+
+  /**
+   * Filled rectangle
+   */
+  static final class Rectangle extends LayoutNode {
+    private final int width;
+    private final int height;
+    private final PDColor color;
+    private final Gravity gravity;
+
+    Rectangle(int width, int height, PDColor color, Gravity gravity) {
+      this.width = width;
+      this.height = height;
+      this.color = color;
+      this.gravity = gravity;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return height;
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      int y = cursor.y - height;
+      cursor.x = align(cursor.x, gravity, pageWidth + margin, margin, pageWidth, width);
+      cursor.y = y - leading;
+      return new Position(cursor.x, y);
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDPageContentStream contentStream = graphics.getContentStream();
+      graphics.setNonStrokingColor(color);
+      contentStream.addRect(position.getX(), position.getY(), width, height);
+      contentStream.fill();
+    }
+  }
+
+  /**
+   * Filled rectangle with rounded corners
+   */
+  static final class RoundedRectangle extends LayoutNode {
+    private final int width;
+    private final int height;
+    private final int cornerRadius;
+    private final boolean isToDrawOnlyTopRadius;
+    private final PDColor color;
+    private final Gravity gravity;
+
+    RoundedRectangle(int width, int height, int cornerRadius, boolean isToDrawOnlyTopRadius,
+                     PDColor color, Gravity gravity) {
+      this.width = width;
+      this.height = height;
+      this.cornerRadius = cornerRadius;
+      this.isToDrawOnlyTopRadius = isToDrawOnlyTopRadius;
+      this.color = color;
+      this.gravity = gravity;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return height;
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      int y = cursor.y;
+      cursor.x = align(cursor.x, gravity, pageWidth + margin, margin, pageWidth, width);
+      cursor.y = y - height - 4*leading;
+      return new Position(cursor.x, y);
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDPageContentStream contentStream = graphics.getContentStream();
+      graphics.setNonStrokingColor(color);
+      (isToDrawOnlyTopRadius ? PathTemplate.TOP_ROUND_RECT : PathTemplate.ROUND_RECT).add(contentStream,
+        position.getX(), position.getY() - height, position.getX() + width, position.getY(),
+        cornerRadius, cornerRadius);
+      contentStream.fill();
+    }
+  }
+
+  /**
+   * Image, space is kept for it also when it can not be fetched, unless it is known to be missing when created
+   */
+  static final class Image extends LayoutNode {
+    private final String imageUrl;
+    private final int width;
+    private final int height;
+    private final Gravity gravity;
+    // NaN for resolution set on document
+    private final float dpi;
+    private final boolean missing;
+
+    Image(String imageUrl, int width, int height, Gravity gravity) {
+      this(imageUrl, width, height, gravity, Float.NaN, false);
+    }
+
+    /**
+     * @param imageUrl : image url or file path
+     * @param width : width image is drawn with
+     * @param height : height image is drawn with
+     * @param gravity : gravity
+     * @param dpi : dots per inch image is downsampled to, 0 to embed it as it is, NaN for resolution of document
+     * @param missing : whether image is known to be missing, cursor then only moves horizontally like for
+     *                an empty url, eg. when image is fetched before it is drawn
+     */
+    Image(String imageUrl, int width, int height, Gravity gravity, float dpi, boolean missing) {
+      this.imageUrl = imageUrl;
+      this.width = width;
+      this.height = height;
+      this.gravity = gravity;
+      this.dpi = dpi;
+      this.missing = missing;
+    }
+
+    @Override
+    float getHeight(int pageWidth) {
+      return height;
+    }
+
+    @Override
+    Position place(Point cursor, float margin, int pageWidth, int leading) {
+      int y = cursor.y - height;
+      cursor.x = align(cursor.x, gravity, pageWidth + margin, margin, pageWidth, width);
+      if (imageUrl == null || imageUrl.isEmpty() || missing)
+        return null;
+      cursor.y = y - 4*leading;
+      return new Position(cursor.x, y);
+    }
+
+    @Override
+    void prepare(PDFGenerationUtils pdf) throws IOException {
+      if (imageUrl != null && !imageUrl.isEmpty() && !missing)
+        getImage(pdf);
+    }
+
+    @Override
+    void render(PDFGenerationUtils pdf, GraphicsState graphics, Position position,
+                int pageWidth) throws IOException {
+      PDImageXObject image = getImage(pdf);
+      if (image != null)
+        graphics.getContentStream().drawImage(image, position.getX(), position.getY(), width, height);
+    }
+
+    private PDImageXObject getImage(PDFGenerationUtils pdf) throws IOException {
+      return Float.isNaN(dpi) ? pdf.getImage(imageUrl, width, height) : pdf.getImage(imageUrl, width, height, dpi);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.pramod.pdfmaster;
+
+import java.util.Arrays;
+
+/**
+ * Word wrapping used by all text paths.
+ *
+ * Text is broken at spaces. Width of line is kept as a running sum, so every glyph is
+ * measured once while scanning and at most once more when a line is broken before it.
+ * Leading and trailing white spaces of wrapped lines are dropped, same as {@link String#trim()}.
+ */
+public final class LineBreaker {
+
+  private LineBreaker() {
+  }
+
+  /**
+   * To break text into lines fitting in width
+   * A word wider than width is kept on its own line
+   * @param text : text to break
+   * @param font : font to measure text
+   * @param fontSize : font size
+   * @param maxWidth : available width
+   * @return : lines of text
+   */
+  public static TextLines breakLines(String text, CachedFont font, float fontSize, float maxWidth) {
+    return breakLines(text, null, font, fontSize, fontSize, maxWidth);
+  }
+
+  /**
+   * To break rich text into lines fitting in width, wrapping across run boundaries
+   * Each code point is measured with font and size of its run, lines take height of largest run
+   * @param richText : text to break
+   * @param maxWidth : available width
+   * @return : lines of text
+   */
+  static TextLines breakLines(RichText richText, float maxWidth) {
+    return breakLines(richText.getText(), richText, richText.getLargestFont(), richText.getLargestFontSize(),
+      1, maxWidth);
+  }
+
+  /**
+   * @param runs : runs measuring text, null to measure it with font
+   * @param scale : points per 1000 measured units
+   */
+  private static TextLines breakLines(String text, RichText runs, CachedFont font, float fontSize, float scale,
+                                      float maxWidth) {
+    PdfEvents.TextLayout event = new PdfEvents.TextLayout();
+    event.begin();
+    int capacity = 4;
+    int[] starts = new int[capacity];
+    int[] ends = new int[capacity];
+    float[] widths = new float[capacity];
+    int lineCount = 0;
+
+    int lineStart = 0;
+    int end = text.length();
+    // width of text from line start to pos, in 1/1000 text space units, or 1/1000 points for runs
+    int pos = 0;
+    float width = 0;
+    int lastSpace = -1;
+    float lastSpaceWidth = 0;
+
+    while (lineStart < end) {
+      int spaceIndex = text.indexOf(' ', lastSpace < 0 ? lineStart : lastSpace + 1);
+      if (spaceIndex < 0 || spaceIndex > end)
+        spaceIndex = end;
+
+      while (pos < spaceIndex) {
+        int codePoint = text.codePointAt(pos);
+        width += runs == null ? font.getWidth(codePoint) : runs.getWidth(codePoint, pos);
+        pos += Character.charCount(codePoint);
+      }
+
+      int lineEnd;
+      float lineWidth;
+      if (scale * width / 1000 > maxWidth) {
+        if (lastSpace < 0) {
+          lastSpace = spaceIndex;
+          lastSpaceWidth = width;
+        }
+        lineEnd = lastSpace;
+        lineWidth = lastSpaceWidth;
+      } else if (spaceIndex == end) {
+        lineEnd = end;
+        lineWidth = width;
+      } else {
+        lastSpace = spaceIndex;
+        lastSpaceWidth = width;
+        continue;
+      }
+
+      if (lineCount == capacity) {
+        capacity *= 2;
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+      }
+      starts[lineCount] = lineStart;
+      ends[lineCount] = lineEnd;
+      widths[lineCount] = scale * lineWidth / 1000;
+      lineCount++;
+
+      // rest of text is trimmed before it is wrapped again
+      lineStart = lineEnd;
+      if (lineStart < end) {
+        while (end > lineStart && text.charAt(end - 1) <= ' ')
+          end--;
+        while (lineStart < end && text.charAt(lineStart) <= ' ')
+          lineStart++;
+      }
+      pos = lineStart;
+      width = 0;
+      lastSpace = -1;
+    }
+
+    if (event.shouldCommit()) {
+      event.characters = text.length();
+      event.lines = lineCount;
+      event.fontSize = fontSize;
+      event.commit();
+    }
+    return new TextLines(text, font, fontSize, starts, ends, widths, lineCount);
+  }
+}
@@ -0,0 +1,132 @@
+package com.pramod.pdfmaster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Image file fetched by {@link ImageLoader}.
+ * Holds jpeg header if file can be embedded as it is, and decoded image once it is decoded.
+ */
+final class LoadedImage {
+  private final File file;
+  private final JpegImage jpeg;
+  private BufferedImage image;
+
+  LoadedImage(File file, JpegImage jpeg, BufferedImage image) {
+    this.file = file;
+    this.jpeg = jpeg;
+    this.image = image;
+  }
+
+  /**
+   * @return : fetched file
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * @return : jpeg which can be embedded without decoding, null for other images
+   */
+  JpegImage getJpeg() {
+    return jpeg;
+  }
+
+  /**
+   * @return : width in pixels, 0 if file could not be decoded
+   * @throws IOException
+   */
+  int getWidth() throws IOException {
+    if (jpeg != null)
+      return jpeg.getWidth();
+    BufferedImage decoded = getImage();
+    return decoded == null ? 0 : decoded.getWidth();
+  }
+
+  /**
+   * @return : height in pixels, 0 if file could not be decoded
+   * @throws IOException
+   */
+  int getHeight() throws IOException {
+    if (jpeg != null)
+      return jpeg.getHeight();
+    BufferedImage decoded = getImage();
+    return decoded == null ? 0 : decoded.getHeight();
+  }
+
+  /**
+   * To get decoded image, decoding it on first call if it was not decoded by loader
+   * @return : decoded image, null if file could not be decoded
+   * @throws IOException
+   */
+  BufferedImage getImage() throws IOException {
+    if (image == null)
+      image = decode(file);
+    return image;
+  }
+
+  /**
+   * To decode image file
+   * @param file : image file
+   * @return : decoded image, null if file could not be decoded
+   * @throws IOException
+   */
+  static BufferedImage decode(File file) throws IOException {
+    PdfEvents.ImageDecode event = new PdfEvents.ImageDecode();
+    event.begin();
+    BufferedImage image = ImageIO.read(file);
+    commit(event, file, image, 1);
+    return image;
+  }
+
+  /**
+   * To get image decoded with at least twice the given size where possible
+   * Jpegs which were not decoded yet are decoded subsampled, skipping pixels which would be thrown away by resampling
+   * @param minWidth : width in pixels image will be resampled to
+   * @param minHeight : height in pixels image will be resampled to
+   * @return : decoded image, null if file could not be decoded
+   * @throws IOException
+   */
+  BufferedImage getImage(int minWidth, int minHeight) throws IOException {
+    if (image != null || jpeg == null)
+      return getImage();
+    int subsampling = Math.min(jpeg.getWidth() / (2 * minWidth), jpeg.getHeight() / (2 * minHeight));
+    if (subsampling <= 1)
+      return getImage();
+
+    try (ImageInputStream inputStream = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(inputStream);
+      if (!readers.hasNext())
+        return null;
+      ImageReader reader = readers.next();
+      try {
+        PdfEvents.ImageDecode event = new PdfEvents.ImageDecode();
+        event.begin();
+        reader.setInput(inputStream, true, true);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        BufferedImage subsampled = reader.read(0, param);
+        commit(event, file, subsampled, subsampling);
+        return subsampled;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private static void commit(PdfEvents.ImageDecode event, File file, BufferedImage image, int subsampling) {
+    if (event.shouldCommit()) {
+      event.file = file.getPath();
+      event.width = image == null ? 0 : image.getWidth();
+      event.height = image == null ? 0 : image.getHeight();
+      event.subsampling = subsampling;
+      event.commit();
+    }
+  }
+}
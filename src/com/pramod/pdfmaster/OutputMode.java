@@ -0,0 +1,11 @@
+package com.pramod.pdfmaster;
+
+/**
+ * Where document data is kept until pdf is saved
+ * IN_MEMORY : whole document is kept on heap
+ * STREAMING : every page is written to pdf file as soon as drawing moves to next page,
+ *             only object offsets stay on heap
+ */
+public enum OutputMode {
+  IN_MEMORY, STREAMING
+}
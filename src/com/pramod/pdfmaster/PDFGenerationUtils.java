@@ -1,45 +1,101 @@
 package com.pramod.pdfmaster;
 
 import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.filter.Filter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
 import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
-import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.interactive.annotation.*;
 import org.apache.pdfbox.pdmodel.interactive.form.*;
+import org.apache.pdfbox.util.Matrix;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-
-public class PDFGenerationUtils {
+import java.util.stream.Stream;
+
+public class PDFGenerationUtils implements Closeable {
+  // colours are immutable, so they are shared by all documents, also when rendered concurrently
+  private static final PDColor WIDGET_BORDER_COLOR = new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE);
+  private static final PDColor WIDGET_BACKGROUND_COLOR = new PDColor(new float[]{1, 1, 1}, PDDeviceRGB.INSTANCE);
+  // colours of getColor by packed 0-255 components, so one instance is kept per colour
+  private static final Map<Integer, PDColor> COLORS = new ConcurrentHashMap<>();
   private final String filePath;
   private final PDAcroForm acroForm;
+  private final FieldRegistry fieldRegistry;
   private PDPage page;
+  private GraphicsState graphicsState;
   public String TAG_REPORT_PAGE_COUNT_FORMAT = "{0} of {1}";
   private  int TITLE_FONT_SIZE = 20;
   private  int widgetDefaultFontSize = 12;
   private String REPORT_STORAGE_TEMP_IMAGE_FOLDER = "src/main/resources/temp";
+  private long IMAGE_CACHE_MAX_BYTES = ImageCache.DEFAULT_MAX_BYTES;
+  private int IMAGE_PREFETCH_CONCURRENCY = ImageLoader.DEFAULT_CONCURRENCY;
+  private ImageLoader imageLoader;
+  private static final float DEFAULT_IMAGE_QUALITY = 0.2f;
+  // null keeps jpeg images as they are
+  private Float IMAGE_QUALITY;
+  // 0 embeds images with their own resolution
+  private float IMAGE_DPI = 0;
+  private ImageEncoding IMAGE_ENCODING = ImageEncoding.AUTO;
+  private final ImageEncoder imageEncoder = new ImageEncoder();
+  // images already embedded in document, reused when same image is inserted again
+  private final HashMap<ImageKey, PDImageXObject> imageCache = new HashMap<>();
+  // appearance streams of radio buttons and check boxes, shared by widgets of same shape, content is shared
+  // by all documents in AppearanceContent
+  private final HashMap<AppearanceKey, PDAppearanceStream> appearanceCache = new HashMap<>();
+  // embedded fonts loaded in this document, subset to glyphs drawn with them on save
+  private final HashMap<CachedFont, PDType0Font> embeddedFonts = new HashMap<>();
+  // template blocks embedded in this document, drawn again for every record
+  private final HashMap<TemplateBlock, PDFormXObject> templateForms = new HashMap<>();
+  // set while a template block is recorded, see recordTemplateBlock
+  private boolean recordingBlock;
+  private int blockTop;
+  private float blockMinStartY;
+  // prefix of field names of template being drawn, see addTemplate
+  private String templateFieldPrefix = "";
+  // whole pages of display lists are encoded and compressed in parallel
+  private boolean RENDER_PAGES_IN_PARALLEL = true;
+  private static final int PARALLEL_RENDER_BATCH_PAGES = 128;
+  // set while pages are encoded in parallel, images are then only looked up in imageCache
+  private boolean renderingInParallel;
+  // object streams and xref stream in streaming mode, in memory mode always has them
+  private boolean COMPACT_OUTPUT;
+  // size breakdown written next to pdf on save
+  private boolean SIZE_REPORT;
+  private SizeReport sizeReport;
   private int WIDGET_ICON_WIDTH = 13;
   private float MARGIN = 25;
   private PDDocument document;
+  private final OutputMode outputMode;
+  private StreamingPdfWriter streamingWriter;
+  private IOException streamingError;
   private int pageNo = -1;
   private Point currentPoint = new Point();
   private int pageWidth;
@@ -65,24 +121,128 @@ public class PDFGenerationUtils {
 
   /**
    * To store downloaded images in temp folder
+   * Folder is kept between documents and can be shared by workers
    * @param REPORT_STORAGE_TEMP_IMAGE_FOLDER : folder path
    */
   public void setREPORT_STORAGE_TEMP_IMAGE_FOLDER(String REPORT_STORAGE_TEMP_IMAGE_FOLDER) {
     this.REPORT_STORAGE_TEMP_IMAGE_FOLDER = REPORT_STORAGE_TEMP_IMAGE_FOLDER;
+    closeImageLoader();
+  }
+
+  /**
+   * To set max size of downloaded images kept in temp folder
+   * Least recently used images are deleted above this size
+   * @param IMAGE_CACHE_MAX_BYTES : size in bytes
+   */
+  public void setIMAGE_CACHE_MAX_BYTES(long IMAGE_CACHE_MAX_BYTES) {
+    this.IMAGE_CACHE_MAX_BYTES = IMAGE_CACHE_MAX_BYTES;
+    closeImageLoader();
+  }
+
+  /**
+   * To set how many images are fetched at the same time by {@link #prefetchImages(Collection)}
+   * @param IMAGE_PREFETCH_CONCURRENCY : max concurrent fetches
+   */
+  public void setIMAGE_PREFETCH_CONCURRENCY(int IMAGE_PREFETCH_CONCURRENCY) {
+    this.IMAGE_PREFETCH_CONCURRENCY = IMAGE_PREFETCH_CONCURRENCY;
+    closeImageLoader();
+  }
+
+  /**
+   * To set jpeg quality of inserted images
+   * By default jpeg images are embedded as they are and other images encoded as jpeg use quality 0.2,
+   * once quality is set jpeg images are re-encoded too
+   * @param IMAGE_QUALITY : quality between 0 and 1
+   */
+  public void setIMAGE_QUALITY(float IMAGE_QUALITY) {
+    this.IMAGE_QUALITY = IMAGE_QUALITY;
+    closeImageLoader();
+  }
+
+  /**
+   * To set resolution inserted images are downsampled to, for the size they are drawn with
+   * Images with lower resolution are embedded as they are
+   * @param IMAGE_DPI : dots per inch, 0 to never downsample
+   */
+  public void setIMAGE_DPI(float IMAGE_DPI) {
+    this.IMAGE_DPI = IMAGE_DPI;
+  }
+
+  /**
+   * To set how decoded images are encoded, jpeg files are embedded as they are unless quality is set
+   * By default encoder is chosen by image content, jpeg for photos and lossless for graphics
+   * @param IMAGE_ENCODING : image encoding
+   */
+  public void setIMAGE_ENCODING(ImageEncoding IMAGE_ENCODING) {
+    this.IMAGE_ENCODING = IMAGE_ENCODING;
+  }
+
+  /**
+   * To set whether pages of display lists are encoded and compressed in parallel
+   * Output is same either way, first and last page of a list are always rendered on calling thread
+   * @param RENDER_PAGES_IN_PARALLEL : true to use common fork/join pool
+   */
+  public void setRENDER_PAGES_IN_PARALLEL(boolean RENDER_PAGES_IN_PARALLEL) {
+    this.RENDER_PAGES_IN_PARALLEL = RENDER_PAGES_IN_PARALLEL;
+  }
+
+  /**
+   * To pack dictionaries (pages, annotations, widgets, form fields) into compressed object streams
+   * and write a compressed xref stream instead of xref table, needs pdf 1.5 readers
+   * In memory documents are saved this way by pdfbox anyway, in streaming mode it has to be set
+   * before first page is written
+   * @param COMPACT_OUTPUT : true to write compact pdf
+   */
+  public void setCOMPACT_OUTPUT(boolean COMPACT_OUTPUT) {
+    this.COMPACT_OUTPUT = COMPACT_OUTPUT;
+  }
+
+  /**
+   * To set Flate level of content streams, lossless images, object streams and xref streams
+   * Level is kept by pdfbox in a system property, so it applies to all documents of the JVM
+   * @param FLATE_LEVEL : level between 0 (no compression) and 9 (smallest), -1 for default level
+   */
+  public static void setFLATE_LEVEL(int FLATE_LEVEL) {
+    if (FLATE_LEVEL < -1 || FLATE_LEVEL > 9)
+      throw new IllegalArgumentException("Flate level must be between -1 and 9, got " + FLATE_LEVEL);
+    System.setProperty(Filter.SYSPROP_DEFLATELEVEL, Integer.toString(FLATE_LEVEL));
+  }
+
+  /**
+   * To analyse pdf once it is saved and write its size breakdown next to it, as name.size.json
+   * Saved pdf is read again for it, so saving takes longer, see {@link SizeReport}
+   * @param SIZE_REPORT : true to write size report
+   */
+  public void setSIZE_REPORT(boolean SIZE_REPORT) {
+    this.SIZE_REPORT = SIZE_REPORT;
   }
 
 
   public PDFGenerationUtils(String folderPath, String fileName){
+    this(folderPath, fileName, OutputMode.IN_MEMORY);
+  }
+
+  /**
+   * To create pdf with given output mode
+   * Use {@link OutputMode#STREAMING} for large documents, so heap does not grow with page count
+   * @param folderPath : folder to save pdf in
+   * @param fileName : pdf file name
+   * @param outputMode : where to keep document data till it is saved
+   */
+  public PDFGenerationUtils(String folderPath, String fileName, OutputMode outputMode){
     filePath = (folderPath.concat("/").concat(fileName));
+    this.outputMode = outputMode;
     document = createEmptyPDF();
 
-    PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+    // Form level fonts, set once for all fields
     PDResources resources = new PDResources();
-    resources.put(COSName.getPDFName("Helv"), font);
+    resources.put(COSName.getPDFName("Helv"), FontRegistry.get(Standard14Fonts.FontName.HELVETICA).getFont());
+    resources.put(COSName.getPDFName("HeBo"), FontRegistry.get(Standard14Fonts.FontName.HELVETICA_BOLD).getFont());
 
     // Add a new AcroForm and add that to the document
     acroForm = new PDAcroForm(document);
     document.getDocumentCatalog().setAcroForm(acroForm);
+    fieldRegistry = new FieldRegistry(acroForm);
 
     // Add and set the resources and default appearance at the form level
     acroForm.setDefaultResources(resources);
@@ -126,12 +286,90 @@ public class PDFGenerationUtils {
    * @return : created page
    */
   private PDPage addNewPage(PDDocument document) {
+    PdfEvents.PageCreated event = new PdfEvents.PageCreated();
+    event.begin();
+    closeContentStream();
     PDPage page = new PDPage(PDRectangle.A4);
-    document.addPage(page);
+    if (outputMode == OutputMode.STREAMING)
+      writeFinishedPage();
+    else
+      document.addPage(page);
     pageNo++;
+    if (event.shouldCommit()) {
+      event.pageNumber = pageNo + 1;
+      event.streaming = outputMode == OutputMode.STREAMING;
+      event.commit();
+    }
     return page;
   }
 
+  /**
+   * To write current page to pdf file in streaming mode
+   * Errors are kept and thrown from {@link #savePdf()}
+   */
+  private void writeFinishedPage() {
+    if (page == null || streamingError != null)
+      return;
+    try {
+      if (streamingWriter == null) {
+        streamingWriter = new StreamingPdfWriter(document, new FileOutputStream(filePath), COMPACT_OUTPUT);
+        for (PDType0Font font : embeddedFonts.values())
+          streamingWriter.defer(font.getCOSObject());
+      }
+      streamingWriter.writePage(page);
+    } catch (IOException e) {
+      streamingError = e;
+    }
+  }
+
+  /**
+   * To get content stream of current page with its graphics state
+   * Stream is opened once per page and kept open till cursor moves to next page
+   * @return : graphics state of current page
+   * @throws IOException
+   */
+  private GraphicsState getGraphicsState() throws IOException {
+    if (graphicsState == null)
+      graphicsState = new GraphicsState(
+        new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true));
+    return graphicsState;
+  }
+
+  /**
+   * To close content stream of current page, if open
+   */
+  private void closeContentStream() {
+    if (graphicsState == null)
+      return;
+    try {
+      graphicsState.getContentStream().close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    graphicsState = null;
+  }
+
+  /**
+   * To move to a new page when content of given height does not fit above bottom margin
+   * @param height : height of content to draw at current position
+   */
+  private void moveToNewPageIfNeeded(float height) {
+    if (recordingBlock)
+      blockMinStartY = Math.max(blockMinStartY, blockTop - currentPoint.y + height + MARGIN);
+    if (currentPoint.y <= height + MARGIN) {
+      page = addNewPage(document);
+      initDrawingPoints();
+    }
+  }
+
+  /**
+   * To get number of pages, including current page
+   * @return : page count
+   */
+  public int getPageCount() {
+    return pageNo + 1;
+  }
+
   /**
    * To get page width (drawing area width - 2*MARGIN)
    * @return : page width
@@ -150,110 +388,219 @@ public class PDFGenerationUtils {
    */
   public int insertImage(String imageUrl,
                          int imgWidth, int imgHeight, Gravity gravity) {
-    if (currentPoint.y <=  imgHeight + MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
-    float x = currentPoint.x;
-    float y = currentPoint.y - imgHeight;
+    return insertImage(imageUrl, imgWidth, imgHeight, gravity, IMAGE_DPI);
+  }
 
-    switch (gravity){
-      case END -> currentPoint.x = (int) (pageWidth + MARGIN -  imgWidth);
-      case START -> currentPoint.x = (int) MARGIN;
-      case CENTER -> currentPoint.x = (int) ((pageWidth) - imgWidth) / 2;
+  /**
+   * To insert image in pdf document page, downsampled to given resolution
+   * Image is fetched before it is laid out, so no space is kept for an image which can not be fetched
+   *
+   * @param imageUrl  : image url
+   * @param imgWidth  : image width
+   * @param imgHeight : image height
+   * @param dpi       : dots per inch image is downsampled to, 0 to embed it as it is
+   * @return : always 0
+   */
+  public int insertImage(String imageUrl,
+                         int imgWidth, int imgHeight, Gravity gravity, float dpi) {
+    boolean missing = false;
+    if (imageUrl != null && !imageUrl.isEmpty()) {
+      try {
+        missing = getImage(imageUrl, imgWidth, imgHeight, dpi) == null;
+      } catch (IOException e) {
+        e.printStackTrace();
+        missing = true;
+      }
     }
+    draw(new LayoutNode.Image(imageUrl, imgWidth, imgHeight, gravity, dpi, missing));
+    return 0;
+  }
 
-    x = currentPoint.x;
+  /**
+   * To get image embedded in document for given size, downsampled to resolution set by {@link #setIMAGE_DPI(float)}
+   * @see #getImage(String, int, int, float)
+   */
+  PDImageXObject getImage(String imageUrl, int imgWidth, int imgHeight) throws IOException {
+    return getImage(imageUrl, imgWidth, imgHeight, IMAGE_DPI);
+  }
+
+  /**
+   * To get image embedded in document for given size
+   * Image already embedded in this document is drawn again without downloading or encoding it
+   * @param imageUrl : image url or file path
+   * @param imgWidth : width image is drawn with
+   * @param imgHeight : height image is drawn with
+   * @param dpi : dots per inch image is downsampled to, 0 to embed it as it is
+   * @return : embedded image, null if image could not be downloaded
+   * @throws IOException
+   */
+  PDImageXObject getImage(String imageUrl, int imgWidth, int imgHeight, float dpi) throws IOException {
+    int pixelWidth = dpi > 0 ? ImageResampler.getPixels(imgWidth, dpi) : 0;
+    int pixelHeight = dpi > 0 ? ImageResampler.getPixels(imgHeight, dpi) : 0;
+    ImageKey imageKey = new ImageKey(imageUrl, IMAGE_QUALITY, IMAGE_ENCODING, pixelWidth, pixelHeight);
+    PDImageXObject pdImage = imageCache.get(imageKey);
+    // images which could not be embedded before pages are rendered in parallel are left out
+    if (pdImage == null && !renderingInParallel) {
+      pdImage = createImage(imageUrl, pixelWidth, pixelHeight);
+      // kept for requested size too, so next lookup does not fetch image to find size it is embedded with
+      if (pdImage != null)
+        imageCache.put(imageKey, pdImage);
+    }
+    return pdImage;
+  }
 
-    int img_height=0;
-    File file = null;
+  /**
+   * To download (if needed) and embed image in document
+   * @param imageUrl : image url or file path
+   * @param pixelWidth : max width in pixels, 0 to keep image width
+   * @param pixelHeight : max height in pixels, 0 to keep image height
+   * @return : embedded image, null if image could not be downloaded
+   * @throws IOException
+   */
+  private PDImageXObject createImage(String imageUrl, int pixelWidth, int pixelHeight) throws IOException {
+    LoadedImage loadedImage = getImageLoader().get(imageUrl);
+    if (loadedImage == null)
+      return null;
     try {
-      if (imageUrl == null || imageUrl == "") {
-        return img_height;
-//                file = new File(REPORT_STORAGE_APP_IMAGE_PATH);
-      } else if (imageUrl.contains("http")) {
-
-        String filename = String.valueOf(imageUrl.hashCode());
-
-        URL website = new URL(imageUrl);
-        File folder = new File(REPORT_STORAGE_TEMP_IMAGE_FOLDER);
-        if (!folder.exists())
-          folder.mkdirs();
-        file = new File(folder, filename+".jpg");
-
-        if (file.exists()){
-        }else {
-          file.createNewFile();
-
-          try {
-            BufferedImage bufferedImage = ImageIO.read(website);
-            ImageIO.write(bufferedImage, "jpg", file);
-
-          } catch (IOException ex) {
-            file.delete();
-            return img_height;
-          }
-        }
-      } else {
-        file = new File(imageUrl);
-      }
+      return embedImage(imageUrl, loadedImage, pixelWidth, pixelHeight);
+    } catch (IOException e) {
+      if (loadedImage.getFile().exists())
+        throw e;
+      // cached file was evicted by another document or worker after it was fetched, it is fetched again
+      loadedImage = getImageLoader().get(imageUrl);
+      return loadedImage == null ? null : embedImage(imageUrl, loadedImage, pixelWidth, pixelHeight);
+    }
+  }
 
-      // Get Content Stream for Writing Data
-      PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true);
+  /**
+   * To get image embedded with the pixels it is actually encoded with
+   * Image is never upsampled, so sizes it is not downsampled for share one embedded image
+   * @param imageUrl : image url or file path
+   * @param loadedImage : fetched image
+   * @param pixelWidth : width in pixels image is downsampled to, 0 to embed it as it is
+   * @param pixelHeight : height in pixels image is downsampled to, 0 to embed it as it is
+   * @return : embedded image, null if image could not be decoded
+   * @throws IOException
+   */
+  private PDImageXObject embedImage(String imageUrl, LoadedImage loadedImage, int pixelWidth,
+                                    int pixelHeight) throws IOException {
+    if (pixelWidth > 0) {
+      int sourceWidth = loadedImage.getWidth();
+      int sourceHeight = loadedImage.getHeight();
+      pixelWidth = Math.min(pixelWidth, sourceWidth);
+      pixelHeight = Math.min(pixelHeight, sourceHeight);
+      if (pixelWidth == sourceWidth && pixelHeight == sourceHeight) {
+        pixelWidth = 0;
+        pixelHeight = 0;
+      }
+    }
+    ImageKey imageKey = new ImageKey(imageUrl, IMAGE_QUALITY, IMAGE_ENCODING, pixelWidth, pixelHeight);
+    PDImageXObject pdImage = imageCache.get(imageKey);
+    if (pdImage == null) {
+      pdImage = createImage(imageUrl, loadedImage, pixelWidth, pixelHeight);
+      if (pdImage != null)
+        imageCache.put(imageKey, pdImage);
+    }
+    return pdImage;
+  }
 
-      // Creating PDImageXObject object
-      //  PDImageXObject pdImage = PDImageXObject.createFromFile(file.getAbsolutePath(), document);
-      BufferedImage bufferedImage = ImageIO.read(file);
-      PDImageXObject pdImage = JPEGFactory.createFromImage(document,bufferedImage,0.2f);
+  private PDImageXObject createImage(String imageUrl, LoadedImage loadedImage, int pixelWidth,
+                                     int pixelHeight) throws IOException {
+    // Jpeg data is embedded as it is unless a quality is asked for or it has more pixels than needed
+    JpegImage jpeg = loadedImage.getJpeg();
+    boolean resample = pixelWidth > 0 && (jpeg == null || jpeg.getWidth() > pixelWidth || jpeg.getHeight() > pixelHeight);
+    if (IMAGE_QUALITY == null && jpeg != null && !resample) {
+      PdfEvents.ImageEncode event = new PdfEvents.ImageEncode();
+      event.begin();
+      return commit(event, imageUrl, jpeg.embed(document));
+    }
 
-      contentStream.drawImage(pdImage, x, y, imgWidth, imgHeight);
+    // Creating PDImageXObject object
+    //  PDImageXObject pdImage = PDImageXObject.createFromFile(file.getAbsolutePath(), document);
+    BufferedImage bufferedImage = resample ? loadedImage.getImage(pixelWidth, pixelHeight) : loadedImage.getImage();
+    if (bufferedImage == null)
+      return null;
+    if (resample)
+      bufferedImage = ImageResampler.resample(bufferedImage, pixelWidth, pixelHeight);
+    PdfEvents.ImageEncode event = new PdfEvents.ImageEncode();
+    event.begin();
+    return commit(event, imageUrl, imageEncoder.encode(document, imageUrl, bufferedImage, IMAGE_ENCODING,
+      IMAGE_QUALITY == null ? DEFAULT_IMAGE_QUALITY : IMAGE_QUALITY));
+  }
 
-      // Closing the content stream
-      contentStream.close();
+  /**
+   * To commit image encode event, if enabled
+   * @param event : started event
+   * @param imageUrl : image url or file path
+   * @param pdImage : embedded image
+   * @return : embedded image
+   */
+  private PDImageXObject commit(PdfEvents.ImageEncode event, String imageUrl, PDImageXObject pdImage) {
+    if (event.shouldCommit()) {
+      event.source = imageUrl;
+      COSBase filter = pdImage.getCOSObject().getDictionaryObject(COSName.FILTER);
+      event.filter = filter instanceof COSName ? ((COSName) filter).getName() : String.valueOf(filter);
+      event.width = pdImage.getWidth();
+      event.height = pdImage.getHeight();
+      event.bytes = pdImage.getCOSObject().getLength();
+      event.commit();
+    }
+    return pdImage;
+  }
 
-    } catch (IOException e) {
-      System.out.println(file.getAbsolutePath());
-      e.printStackTrace();
-    } finally {
+  /**
+   * To start fetching and decoding images in background, before they are inserted
+   * {@link #insertImage(String, int, int, Gravity)} then only waits for the image it needs
+   * @param imageUrls : image urls or file paths which will be inserted in document
+   */
+  public void prefetchImages(Collection<String> imageUrls) {
+    getImageLoader().prefetch(imageUrls);
+  }
 
-    }
+  /**
+   * To get loader of images, downloading through cache in temp image folder
+   * @return : image loader
+   */
+  private ImageLoader getImageLoader() {
+    if (imageLoader == null)
+      imageLoader = new ImageLoader(new ImageCache(new File(REPORT_STORAGE_TEMP_IMAGE_FOLDER), IMAGE_CACHE_MAX_BYTES,
+        ImageCache.DEFAULT_REVALIDATE_AFTER_MILLIS), IMAGE_PREFETCH_CONCURRENCY, IMAGE_QUALITY == null);
+    return imageLoader;
+  }
 
-    currentPoint.y = (int) (y  - 4*leading);
-    return img_height;
+  /**
+   * To stop prefetching images, if started
+   */
+  private void closeImageLoader() {
+    if (imageLoader != null)
+      imageLoader.close();
+    imageLoader = null;
   }
 
-  private int getHeightOfText(String text, float width, int fontSize) {
+  /**
+   * To draw a layout node at current position, moving to a new page first if it does not fit
+   * @param node : node to draw
+   */
+  private void draw(LayoutNode node) {
+    if (node.canBreakPage())
+      moveToNewPageIfNeeded(node.getHeight(pageWidth));
+    drawAtCursor(node);
+  }
 
-    PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
-    ArrayList<String> lines = new ArrayList<String>();
-    int lastSpace = -1;
-    while (text.length() > 0) {
-      int spaceIndex = text.indexOf(' ', lastSpace + 1);
-      if (spaceIndex < 0)
-        spaceIndex = text.length();
-      String subString = text.substring(0, spaceIndex);
-      float size = 0;
-      try {
-        size = fontSize * font.getStringWidth(subString) / 1000;
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
-      if (size > width) {
-        if (lastSpace < 0)
-          lastSpace = spaceIndex;
-        subString = text.substring(0, lastSpace);
-        lines.add(subString);
-        text = text.substring(lastSpace).trim();
-        lastSpace = -1;
-      } else if (spaceIndex == text.length()) {
-        lines.add(text);
-        text = "";
-      } else {
-        lastSpace = spaceIndex;
-      }
+  /**
+   * To draw a layout node at current position, without moving to a new page
+   * @param node : node to draw
+   */
+  private void drawAtCursor(LayoutNode node) {
+    Position position = node.place(currentPoint, MARGIN, pageWidth, leading);
+    if (position == null)
+      return;
+    try {
+      // Get Content Stream of current page for Writing Data
+      node.render(this, getGraphicsState(), position, pageWidth);
+    } catch (IOException e) {
+      e.printStackTrace();
     }
-    float height = (font.getFontDescriptor().getCapHeight()) / 1000 * fontSize;
-    return (int) (lines.size() * height);
   }
 
   /**
@@ -266,85 +613,40 @@ public class PDFGenerationUtils {
    */
   public void addText(String text, int fontSize,
                       boolean isBold, PDColor color, Gravity gravity) {
+    draw(new LayoutNode.Text(text, fontSize, isBold, color, gravity));
+  }
 
-    PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
-    if (isBold)
-      font = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
-
-    float textWidth = 0;
-    try {
-      textWidth = font.getStringWidth(text) /
-        1000 * fontSize;
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-
-    if (currentPoint.y <=  getHeightOfText(text, pageWidth, fontSize) + MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
-
-    float x = currentPoint.x;
-
-    switch (gravity){
-      case END -> currentPoint.x = (int) (pageWidth - MARGIN -  textWidth);
-      case START -> currentPoint.x = (int) MARGIN;
-      case CENTER -> currentPoint.x = (int) ((pageWidth) - textWidth) / 2;
-    }
-
-    x = currentPoint.x;
-    float y = currentPoint.y;
-    try {
-      if (text == null || text.isEmpty())
-        text = " ";
-      PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND,
-        true, false);
-
-      float leading = 1.2f * fontSize;
-
-      contentStream.setNonStrokingColor(color);
-
-      ArrayList<String> lines = new ArrayList<String>();
-      int lastSpace = -1;
-      while (text.length() > 0) {
-        int spaceIndex = text.indexOf(' ', lastSpace + 1);
-        if (spaceIndex < 0)
-          spaceIndex = text.length();
-        String subString = text.substring(0, spaceIndex);
-        float size = fontSize * font.getStringWidth(subString) / 1000;
-        if (size > pageWidth) {
-          if (lastSpace < 0)
-            lastSpace = spaceIndex;
-          subString = text.substring(0, lastSpace);
-          lines.add(subString);
-          text = text.substring(lastSpace).trim();
-          lastSpace = -1;
-        } else if (spaceIndex == text.length()) {
-          lines.add(text);
-          text = "";
-        } else {
-          lastSpace = spaceIndex;
-        }
-      }
-
-      contentStream.beginText();
-      contentStream.setFont(font, fontSize);
-      contentStream.newLineAtOffset(x, y);
-      for (String line : lines) {
-        contentStream.showText(line);
-        contentStream.newLineAtOffset(0, -leading);
-        y = (int) (y - leading);
-      }
-      contentStream.endText();
-      contentStream.close();
-
-      currentPoint.y = (int) (y - this.leading);
-
+  /**
+   * To add text in given font, eg. an embedded font for text helvetica has no glyphs for
+   * @param text     : text to add
+   * @param font     : font, see {@link FontRegistry#load(String)}
+   * @param fontSize : font size
+   * @param color    : text color
+   * @param gravity  : gravity
+   */
+  public void addText(String text, CachedFont font, int fontSize, PDColor color, Gravity gravity) {
+    draw(new LayoutNode.Text(text, font, fontSize, color, gravity));
+  }
 
-    } catch (IOException e) {
-      e.printStackTrace();
+  /**
+   * To get font to draw text with in this document
+   * Embedded fonts are loaded once per document and keep glyphs drawn with them, only those are embedded
+   * @param font : cached font
+   * @return : pdfbox font
+   * @throws IOException
+   */
+  PDFont getFont(CachedFont font) throws IOException {
+    if (!font.isEmbedded())
+      return font.getFont();
+    PDType0Font pdFont = embeddedFonts.get(font);
+    if (pdFont == null) {
+      pdFont = PDType0Font.load(document, font.getTrueTypeFont(), true);
+      embeddedFonts.put(font, pdFont);
+      // subset is only known once all pages are written
+      if (streamingWriter != null)
+        streamingWriter.defer(pdFont.getCOSObject());
     }
-
+    return pdFont;
   }
 
   /**
@@ -355,92 +657,65 @@ public class PDFGenerationUtils {
    */
   public void addColorText(HashMap<String, PDColor> text, int fontSize,
                            boolean isBold, Gravity gravity) {
+    draw(new LayoutNode.StyledText(RichText.of(text, fontSize, isBold), gravity));
+  }
 
-    AtomicReference<String> textToDisplay = new AtomicReference<>("");
-    text.forEach((s, pdColor) -> {
-      textToDisplay.set(textToDisplay.get().concat(s).concat(","));
-      System.out.println("color text og: "+s);
-
-    });
-
-    if (currentPoint.y <=  getHeightOfText(textToDisplay.get(), pageWidth, fontSize) + MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
-
-    PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
-    if (isBold)
-      font = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
-
-    float textWidth = 0;
-    try {
-      textWidth = font.getStringWidth(textToDisplay.get()) /
-        1000 * fontSize;
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-
-    float x = currentPoint.x;
-
-    switch (gravity){
-      case END -> currentPoint.x = (int) (pageWidth - MARGIN -  textWidth);
-      case START -> currentPoint.x = (int) MARGIN;
-      case CENTER -> currentPoint.x = (int) ((pageWidth) - textWidth) / 2;
-    }
-
-    x = currentPoint.x;
-    float y = currentPoint.y;
-    try {
-      // Get Content Stream for Writing Data
-      PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND,
-        true);
-      float leading = 1.2f * fontSize;
-
-      ArrayList<String> lines = new ArrayList<String>();
-      int lastSpace = -1;
-      while (textToDisplay.get().length() > 0) {
-        int spaceIndex = textToDisplay.get().indexOf(' ', lastSpace + 1);
-        if (spaceIndex < 0)
-          spaceIndex = textToDisplay.get().length();
-        String subString = textToDisplay.get().substring(0, spaceIndex);
-        float size = fontSize * font.getStringWidth(subString) / 1000;
-        if (size > pageWidth) {
-          if (lastSpace < 0)
-            lastSpace = spaceIndex;
-          subString = textToDisplay.get().substring(0, lastSpace);
-          lines.add(subString);
-          textToDisplay.set(textToDisplay.get().substring(lastSpace).trim());
-          lastSpace = -1;
-        } else if (spaceIndex == textToDisplay.get().length()) {
-          lines.add(textToDisplay.get());
-          textToDisplay.set("");
-        } else {
-          lastSpace = spaceIndex;
-        }
-      }
+  /**
+   * To add text made of runs with their own colour, font and size in pdf page
+   * Lines wrap across runs, and colour and font are set only where they change
+   * @param text : rich text
+   */
+  public void addRichText(RichText text, Gravity gravity) {
+    draw(new LayoutNode.StyledText(text, gravity));
+  }
 
-      contentStream.beginText();
-      contentStream.setFont(font, fontSize);
-      contentStream.newLineAtOffset(x, y);
-      for (String line : lines) {
-        contentStream.newLineAtOffset(0, -leading);
-        String[] textToDraw = line.split(",");
-        for (String s : textToDraw) {
-          System.out.println("color text: "+s);
-          contentStream.setNonStrokingColor(text.get(s));
-          contentStream.showText(s.replaceAll(",",""));
-        }
-        y = (int) (y - leading);
+  /**
+   * To add table with rows taken one at a time, header row is repeated on every page table continues on
+   * Only sample rows measured for column widths and the row being drawn are held, so in streaming mode
+   * a table of any length is written with bounded memory
+   * @param table : columns and style of table
+   * @param rows : cells of every row in column order, missing cells are empty
+   */
+  public void addTable(Table table, Iterator<? extends List<String>> rows) {
+    ArrayDeque<List<String>> sample = new ArrayDeque<>();
+    while (sample.size() < table.getSampleRows() && rows.hasNext())
+      sample.add(rows.next());
+    float[] widths = table.getColumnWidths(sample, pageWidth);
+    LayoutNode header = new LayoutNode.TableRow(table, widths, table.getHeaders(), true);
+    LayoutNode row = nextTableRow(table, widths, sample, rows);
+    // header is kept on the same page as first row
+    moveToNewPageIfNeeded(header.getHeight(pageWidth) + (row == null ? 0 : row.getHeight(pageWidth)));
+    draw(header);
+    while (row != null) {
+      int rowPage = pageNo;
+      moveToNewPageIfNeeded(row.getHeight(pageWidth));
+      if (pageNo != rowPage) {
+        // repeated header and row start new page together, row is not moved on when header takes its space
+        draw(header);
+        drawAtCursor(row);
+      } else {
+        draw(row);
       }
-      contentStream.endText();
-      contentStream.close();
-
-      currentPoint.y = (int) (y - this.leading);
+      row = nextTableRow(table, widths, sample, rows);
+    }
+    currentPoint.y -= leading;
+  }
 
+  /**
+   * To add table with rows taken from a stream, one at a time
+   * @see #addTable(Table, Iterator)
+   */
+  public void addTable(Table table, Stream<? extends List<String>> rows) {
+    addTable(table, rows.iterator());
+  }
 
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+  private LayoutNode nextTableRow(Table table, float[] widths, ArrayDeque<List<String>> sample,
+                                  Iterator<? extends List<String>> rows) {
+    if (!sample.isEmpty())
+      return new LayoutNode.TableRow(table, widths, sample.poll(), false);
+    if (rows.hasNext())
+      return new LayoutNode.TableRow(table, widths, rows.next(), false);
+    return null;
   }
 
   /**
@@ -448,48 +723,14 @@ public class PDFGenerationUtils {
    *
    */
   public void drawLines(int width, PDColor pdColor, Gravity gravity) {
-    if (currentPoint.y <=  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
-    float x = currentPoint.x;
-    float y = currentPoint.y;
-    switch (gravity){
-      case END -> currentPoint.x = (int) (pageWidth + MARGIN -  width);
-      case START -> currentPoint.x = (int) MARGIN;
-      case CENTER -> currentPoint.x = (int) ((pageWidth) - width) / 2;
-    }
-    x = currentPoint.x;
-    try {
-
-      // Get Content Stream for Writing Data
-      PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true);
-
-      // Setting the non stroking color
-      contentStream.setStrokingColor(pdColor);
-
-      // lets make some lines
-      contentStream.moveTo(x, y);
-      contentStream.lineTo(x + width, y);
-      contentStream.stroke();
-
-      contentStream.close();
-
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-
-    currentPoint.x = currentPoint.x + width;
-    currentPoint.y = (int) (y - 2*leading);
-
+    draw(new LayoutNode.Line(width, pdColor, gravity));
   }
 
   /**
    * TO add empty line in page
    */
   public void moveToNextLine(){
-    currentPoint.x = (int) MARGIN;
-    currentPoint.y = currentPoint.y - leading;
+    draw(LayoutNode.NextLine.INSTANCE);
   }
 
   /**
@@ -501,41 +742,7 @@ public class PDFGenerationUtils {
    */
   public void drawRectangle(int width, int height,
                             PDColor color, Gravity gravity) {
-    if (currentPoint.y <= height +  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
-    float x = currentPoint.x;
-    float y = currentPoint.y - height;
-
-    switch (gravity){
-      case END -> currentPoint.x = (int) (pageWidth + MARGIN -  width);
-      case START -> currentPoint.x = (int) MARGIN;
-      case CENTER -> currentPoint.x = (int) ((pageWidth) - width) / 2;
-    }
-    x = currentPoint.x;
-    try {
-
-      // Get Content Stream for Writing Data
-      PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true);
-
-      // Setting the non stroking color
-      contentStream.setNonStrokingColor(color);
-
-      // Drawing a rectangle
-      contentStream.addRect(x, y, width, height);
-      // Drawing a rectangle
-      contentStream.fill();
-
-
-      contentStream.close();
-
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-
-    currentPoint.y = (int) (y - leading);
-
+    draw(new LayoutNode.Rectangle(width, height, color, gravity));
   }
 
 
@@ -549,84 +756,336 @@ public class PDFGenerationUtils {
   public void drawRoundedRectangle(int width, int height,
                                    int cornerRadius, boolean isToDrawOnlyTopRadius,
                                    PDColor color, Gravity gravity) {
-    if (currentPoint.y <= height +  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
+    draw(new LayoutNode.RoundedRectangle(width, height, cornerRadius, isToDrawOnlyTopRadius, color, gravity));
+  }
+
+  /**
+   * To lay out display list from current position and render it
+   * Gives same output as making the recorded calls directly, apart from nodes kept with next one
+   * @param displayList : recorded content
+   * @return : resolved layout
+   */
+  public DisplayLayout addDisplayList(DisplayList displayList) {
+    DisplayLayout layout = displayList.layout(page.getMediaBox(), MARGIN, leading, currentPoint.x, currentPoint.y);
+    List<LayoutNode> nodes = layout.getNodes();
+    int pageCount = layout.getPageCount();
+    int[] pageStarts = new int[pageCount + 1];
+    for (int i = nodes.size() - 1; i >= 0; i--)
+      pageStarts[layout.getPage(i)] = i;
+    pageStarts[pageCount] = nodes.size();
+
+    boolean parallel = RENDER_PAGES_IN_PARALLEL && nodes.stream().allMatch(LayoutNode::canRenderInParallel);
+
+    // first page continues current one and last page stays open for next calls, so both are rendered here
+    renderNodes(layout, pageStarts[0], pageStarts[1]);
+    int pageIndex = 1;
+    while (pageIndex < pageCount) {
+      int endPage = parallel ? Math.min(pageCount - 1, pageIndex + PARALLEL_RENDER_BATCH_PAGES) : 0;
+      if (endPage - pageIndex > 1) {
+        renderPagesInParallel(layout, pageStarts, pageIndex, endPage);
+        pageIndex = endPage;
+      } else {
+        page = addNewPage(document);
+        initDrawingPoints();
+        renderNodes(layout, pageStarts[pageIndex], pageStarts[pageIndex + 1]);
+        pageIndex++;
+      }
     }
-    float x = currentPoint.x;
-    float y = currentPoint.y;
-    switch (gravity){
-      case END -> currentPoint.x = (int) (pageWidth + MARGIN -  width);
-      case START -> currentPoint.x = (int) MARGIN;
-      case CENTER -> currentPoint.x = (int) ((pageWidth) - width) / 2;
+    currentPoint.x = layout.getEndX();
+    currentPoint.y = layout.getEndY();
+    return layout;
+  }
+
+  /**
+   * To render nodes of layout to content stream of current page
+   * @param layout : resolved layout
+   * @param fromNode : first node to render
+   * @param toNode : node after last node to render
+   */
+  private void renderNodes(DisplayLayout layout, int fromNode, int toNode) {
+    List<LayoutNode> nodes = layout.getNodes();
+    for (int i = fromNode; i < toNode; i++) {
+      Position position = layout.getPosition(i);
+      if (position == null)
+        continue;
+      try {
+        nodes.get(i).render(this, getGraphicsState(), position, layout.getPageWidth());
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
     }
+  }
 
-    x = currentPoint.x;
+  /**
+   * To encode and compress whole pages of layout in parallel, and add them to document in order
+   * Images are embedded before, so rendering only reads document state shared by pages
+   * @param layout : resolved layout
+   * @param pageStarts : index of first node of every page, followed by number of nodes
+   * @param fromPage : first page to render
+   * @param toPage : page after last page to render
+   */
+  private void renderPagesInParallel(DisplayLayout layout, int[] pageStarts, int fromPage, int toPage) {
+    List<LayoutNode> nodes = layout.getNodes();
+    PageEncoder[] pages;
     try {
+      for (int i = pageStarts[fromPage]; i < pageStarts[toPage]; i++)
+        nodes.get(i).prepare(this);
+      renderingInParallel = true;
+      try {
+        pages = PageEncoder.encode(this, layout, pageStarts, fromPage, toPage);
+      } finally {
+        renderingInParallel = false;
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      pages = new PageEncoder[toPage - fromPage];
+    }
+    for (PageEncoder encodedPage : pages) {
+      page = addNewPage(document);
+      initDrawingPoints();
+      if (encodedPage == null)
+        continue;
+      try {
+        encodedPage.attach(document, page);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
 
-      // Get Content Stream for Writing Data
-      PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true);
 
-      // Setting the non stroking color
-      contentStream.setNonStrokingColor(color);
+  /**
+   * To draw a compiled template with values of one record
+   * Pre-rendered blocks of template are embedded once per document and drawn again for every record,
+   * only placeholders and fields are laid out per record
+   * Form field names are unique in a document, so a template with fields can be drawn once per document,
+   * use {@link #addTemplate(CompiledTemplate, Map, String)} to draw it for many records
+   * @param template : compiled template
+   * @param values : values of placeholders and fields by name
+   * @throws IOException
+   * @throws IllegalArgumentException : if a field of template is already in document, nothing is drawn then
+   */
+  public void addTemplate(CompiledTemplate template, Map<String, String> values) throws IOException {
+    addTemplate(template, values, "");
+  }
 
-      RoundRect roundRect = new RoundRect(cornerRadius, isToDrawOnlyTopRadius);
-      Position position = new Position(x, y);
-      roundRect.add(contentStream, position, width, height);
+  /**
+   * To draw a compiled template with values of one record, naming its form fields with a prefix
+   * Values are still looked up by field names of template, eg. field "name" drawn with prefix "record7_"
+   * is named "record7_name" in document
+   * @param template : compiled template
+   * @param values : values of placeholders and fields by name
+   * @param fieldPrefix : prefix of field names, unique per record and without periods
+   * @throws IOException
+   * @throws IllegalArgumentException : if a prefixed field name is already in document, nothing is drawn then
+   */
+  public void addTemplate(CompiledTemplate template, Map<String, String> values, String fieldPrefix)
+    throws IOException {
+    if (values == null)
+      values = Collections.emptyMap();
+    if (fieldPrefix == null)
+      fieldPrefix = "";
+    // checked before drawing, so a duplicate field does not leave a record half drawn
+    for (String fieldName : template.getFieldNames())
+      fieldRegistry.checkName(fieldPrefix + fieldName);
+    // blocks are pre-rendered with template margin and leading
+    boolean sameLayout = template.getMargin() == MARGIN && template.getLeading() == leading;
+    templateFieldPrefix = fieldPrefix;
+    try {
+      for (TemplateElement element : template.getElements()) {
+        if (sameLayout && element instanceof TemplateBlock && canDrawTemplateBlock((TemplateBlock) element))
+          drawTemplateBlock((TemplateBlock) element);
+        else
+          element.draw(this, values);
+      }
+    } finally {
+      templateFieldPrefix = "";
+    }
+  }
 
-      contentStream.fill();
+  /**
+   * @param partialName : field name in template
+   * @return : field name in document, with prefix of template being drawn
+   */
+  String getTemplateFieldName(String partialName) {
+    return templateFieldPrefix + partialName;
+  }
 
-      contentStream.close();
+  /**
+   * To pre-render static template elements at top of a new page
+   * @param elements : static elements
+   * @return : recorded block, null if elements do not fit in one page
+   * @throws IOException
+   */
+  TemplateBlock recordTemplateBlock(List<TemplateElement> elements) throws IOException {
+    page = addNewPage(document);
+    initDrawingPoints();
+    int startPage = pageNo;
+    int startX = currentPoint.x;
+    blockTop = currentPoint.y;
+    blockMinStartY = Float.NEGATIVE_INFINITY;
+    recordingBlock = true;
+    try {
+      for (TemplateElement element : elements)
+        element.draw(this, Collections.emptyMap());
+    } finally {
+      recordingBlock = false;
+    }
+    closeContentStream();
+    if (pageNo != startPage)
+      return null;
 
-    } catch (IOException e) {
-      e.printStackTrace();
+    byte[] content;
+    try (InputStream inputStream = page.getContents()) {
+      content = inputStream.readAllBytes();
+    }
+    Map<COSName, COSBase> fonts = new HashMap<>();
+    PDResources resources = page.getResources();
+    COSDictionary fontDictionary = resources == null ? null : resources.getCOSObject().getCOSDictionary(COSName.FONT);
+    if (fontDictionary != null) {
+      for (COSName name : fontDictionary.keySet())
+        fonts.put(name, fontDictionary.getDictionaryObject(name));
     }
+    return new TemplateBlock(elements, content, fonts, blockTop, startX, currentPoint.x, currentPoint.y,
+      blockMinStartY);
+  }
 
-    currentPoint.y = (int) (y - height - 4* leading);
+  /**
+   * To check whether drawing block as a whole gives same output as drawing its elements
+   * @param block : template block
+   * @return : whether block fits above bottom margin and starts where it was recorded
+   */
+  private boolean canDrawTemplateBlock(TemplateBlock block) {
+    return currentPoint.y > block.getMinStartY() && (block.resetsX() || currentPoint.x == block.getStartX());
+  }
 
+  /**
+   * To draw template block at current position
+   * @param block : template block
+   * @throws IOException
+   */
+  private void drawTemplateBlock(TemplateBlock block) throws IOException {
+    int offset = currentPoint.y - block.getTop();
+    GraphicsState graphics = getGraphicsState();
+    graphics.save();
+    graphics.getContentStream().transform(Matrix.getTranslateInstance(0, offset));
+    graphics.getContentStream().drawForm(getTemplateForm(block));
+    graphics.restore();
+    currentPoint.x = block.getEndX();
+    currentPoint.y = block.getEndY() + offset;
   }
 
+  /**
+   * To get Form XObject of template block, embedding it on first use in document
+   * @param block : template block
+   * @return : form
+   * @throws IOException
+   */
+  private PDFormXObject getTemplateForm(TemplateBlock block) throws IOException {
+    PDFormXObject form = templateForms.get(block);
+    if (form == null) {
+      form = new PDFormXObject(document);
+      try (OutputStream outputStream = form.getContentStream().createOutputStream(COSName.FLATE_DECODE)) {
+        outputStream.write(block.getContent());
+      }
+      form.setBBox(page.getMediaBox());
+      COSDictionary fonts = new COSDictionary();
+      block.getFonts().forEach(fonts::setItem);
+      PDResources resources = new PDResources();
+      resources.getCOSObject().setItem(COSName.FONT, fonts);
+      form.setResources(resources);
+      templateForms.put(block, form);
+    }
+    return form;
+  }
 
   /**
    * To save pdf
+   * In streaming mode, pages are already written, only last page and document structure are written here
    *
-
    * @throws IOException
    */
   public void savePdf() throws IOException {
-    // Saving the document
-    document.save(filePath);
-    deleteTempFiles();
+    PdfEvents.DocumentSave event = new PdfEvents.DocumentSave();
+    event.begin();
+    closeContentStream();
+    closeImageLoader();
+    if (outputMode == OutputMode.STREAMING) {
+      writeFinishedPage();
+      if (streamingError != null)
+        throw streamingError;
+      // pdfbox subsets fonts when it saves a document, here they are written last by the streaming writer
+      for (PDType0Font font : embeddedFonts.values())
+        font.subset();
+      streamingWriter.finish();
+    } else {
+      // Saving the document
+      document.save(filePath);
+    }
+    if (event.shouldCommit()) {
+      event.file = filePath;
+      event.pages = getPageCount();
+      event.streaming = outputMode == OutputMode.STREAMING;
+      event.bytes = new File(filePath).length();
+      event.commit();
+    }
+    if (SIZE_REPORT) {
+      sizeReport = SizeReport.of(new File(filePath));
+      sizeReport.write(getSizeReportPath());
+    }
   }
 
   /**
-   * Delete temp files
+   * @return : size breakdown of saved pdf, null unless size report is enabled and pdf is saved
    */
-  private void deleteTempFiles() {
-    File file = new File(REPORT_STORAGE_TEMP_IMAGE_FOLDER);
-    for (File listFile : file.listFiles()) {
-      listFile.delete();
+  public SizeReport getSizeReport() {
+    return sizeReport;
+  }
+
+  private String getSizeReportPath() {
+    String path = filePath.toLowerCase().endsWith(".pdf") ? filePath.substring(0, filePath.length() - 4) : filePath;
+    return path + ".size.json";
+  }
+
+  /**
+   * To release document once pdf is saved, or when it is not going to be saved
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    closeContentStream();
+    closeImageLoader();
+    try {
+      if (streamingWriter != null)
+        streamingWriter.close();
+    } finally {
+      document.close();
     }
   }
 
   /**
    * To convert rgb color to pdf color object
+   * Colours with whole 0-255 components are interned, so the same instance is returned for them
    * @param color : color
    * @return
    */
   public PDColor getColor(float[] color) {
-    float[] components;
-    if (color != null && color.length == 3) {
-      components = new float[]{
-        color[0] / 255f, color[1] / 255f, color[2] / 255f};
-    } else {
-      components = new float[]{
-        0, 0, 0};
-    }
-    return new PDColor(components, PDDeviceRGB.INSTANCE);
+    if (color == null || color.length != 3)
+      color = new float[]{0, 0, 0};
+    int red = (int) color[0];
+    int green = (int) color[1];
+    int blue = (int) color[2];
+    if (red != color[0] || green != color[1] || blue != color[2] || ((red | green | blue) & ~0xFF) != 0)
+      return new PDColor(new float[]{color[0] / 255f, color[1] / 255f, color[2] / 255f}, PDDeviceRGB.INSTANCE);
+    int key = (red << 16) | (green << 8) | blue;
+    PDColor pdColor = COLORS.get(key);
+    if (pdColor == null)
+      pdColor = COLORS.computeIfAbsent(key,
+        k -> new PDColor(new float[]{red / 255f, green / 255f, blue / 255f}, PDDeviceRGB.INSTANCE));
+    return pdColor;
   }
 
-
   /**
    * To add radio button
    * @param buttonList : hashmap of buttons
@@ -637,15 +1096,13 @@ public class PDFGenerationUtils {
   public void addRadioButtons(LinkedHashMap<String, String> buttonList,
                               String defaultValue,
                               PDColor pdColor, String partialName) {
-    if (currentPoint.y <= 15 +  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
+    fieldRegistry.checkName(partialName);
+    moveToNewPageIfNeeded(15);
     float[] x = {currentPoint.x};
     float y = currentPoint.y;
 
     try {
-      PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+      CachedFont font = FontRegistry.get(Standard14Fonts.FontName.HELVETICA);
       ArrayList<String> buttonValues = new ArrayList<String>();
       buttonList.forEach((s, s2) -> {
         buttonValues.add(s2);
@@ -656,8 +1113,12 @@ public class PDFGenerationUtils {
       radioButton.setExportValues(buttonValues);
 
       PDAppearanceCharacteristicsDictionary appearanceCharacteristics = new PDAppearanceCharacteristicsDictionary(new COSDictionary());
-      appearanceCharacteristics.setBorderColour(new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE));
-      appearanceCharacteristics.setBackground(new PDColor(new float[]{1, 1, 1}, PDDeviceRGB.INSTANCE));
+      appearanceCharacteristics.setBorderColour(WIDGET_BORDER_COLOR);
+      appearanceCharacteristics.setBackground(WIDGET_BACKGROUND_COLOR);
+
+      PDBorderStyleDictionary borderStyleDictionary = new PDBorderStyleDictionary();
+      borderStyleDictionary.setWidth(1);
+      borderStyleDictionary.setStyle(PDBorderStyleDictionary.STYLE_SOLID);
 
       ArrayList<PDAnnotationWidget> widgets = new ArrayList<PDAnnotationWidget>();
       x[0] += 10;
@@ -667,31 +1128,23 @@ public class PDFGenerationUtils {
         if (index.get() == 0)
           x[0] = x[0];
         else {
-          try {
-            float textWidth = font.getStringWidth(oldValue.get()) /
-              1000 * widgetDefaultFontSize;
-            x[0] = x[0] + textWidth + 6*leading;
-          } catch (IOException e) {
-            e.printStackTrace();
-          }
+          float textWidth = font.getStringWidth(oldValue.get(), widgetDefaultFontSize);
+          x[0] = x[0] + textWidth + 6*leading;
         }
         PDAnnotationWidget widget = new PDAnnotationWidget();
         widget.setRectangle(new PDRectangle(x[0], y, 15, 15));
         widget.setAppearanceCharacteristics(appearanceCharacteristics);
-        PDBorderStyleDictionary borderStyleDictionary = new PDBorderStyleDictionary();
-        borderStyleDictionary.setWidth(1);
-        borderStyleDictionary.setStyle(PDBorderStyleDictionary.STYLE_SOLID);
         widget.setBorderStyle(borderStyleDictionary);
         widget.setPage(page);
 
         COSDictionary apNDict = new COSDictionary();
         try {
-          apNDict.setItem(COSName.Off, createRadioButtonAppearanceStream(document, widget, false));
+          apNDict.setItem(COSName.Off, getAppearanceStream(AppearanceKey.Shape.RADIO_BUTTON, widget, false));
         } catch (IOException e) {
           e.printStackTrace();
         }
         try {
-          apNDict.setItem(s2, createRadioButtonAppearanceStream(document, widget, true));
+          apNDict.setItem(s2, getAppearanceStream(AppearanceKey.Shape.RADIO_BUTTON, widget, true));
         } catch (IOException e) {
           e.printStackTrace();
         }
@@ -708,17 +1161,15 @@ public class PDFGenerationUtils {
           e.printStackTrace();
         }
 
-        PDPageContentStream contentStream = null;
         try {
-          contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND,
-            true, false);
+          GraphicsState graphics = getGraphicsState();
+          PDPageContentStream contentStream = graphics.getContentStream();
           contentStream.beginText();
-          contentStream.setFont(font, widgetDefaultFontSize);
+          graphics.setFont(font.getFont(), widgetDefaultFontSize);
           contentStream.newLineAtOffset(x[0] +25, y+2);
-          contentStream.setNonStrokingColor(pdColor);
+          graphics.setNonStrokingColor(pdColor);
           contentStream.showText(s);
           contentStream.endText();
-          contentStream.close();
         } catch (IOException e) {
           e.printStackTrace();
         }
@@ -729,7 +1180,7 @@ public class PDFGenerationUtils {
       });
 
       radioButton.setWidgets(widgets);
-      acroForm.getFields().add(radioButton);
+      fieldRegistry.add(radioButton);
 
       radioButton.setValue(defaultValue);
 
@@ -741,6 +1192,46 @@ public class PDFGenerationUtils {
     currentPoint.y = (int) (y - 15 - 2*leading);
 
   }
+  /**
+   * To get appearance stream of a widget, shared in a document by widgets of same shape, size and colours
+   * Its content is drawn once and reused by every document, see {@link AppearanceContent}
+   * @param shape : kind of widget
+   * @param widget : widget with rectangle, border style and appearance characteristics set
+   * @param on : whether appearance is for on state
+   * @return : shared appearance stream
+   * @throws IOException
+   */
+  private PDAppearanceStream getAppearanceStream(AppearanceKey.Shape shape, PDAnnotationWidget widget,
+                                                 boolean on) throws IOException {
+    PDRectangle rect = widget.getRectangle();
+    PDAppearanceCharacteristicsDictionary appearanceCharacteristics = widget.getAppearanceCharacteristics();
+    AppearanceKey key = new AppearanceKey(shape, rect.getWidth(), rect.getHeight(), getLineWidth(widget),
+      appearanceCharacteristics.getBorderColour(), appearanceCharacteristics.getBackground(), on);
+    PDAppearanceStream appearanceStream = appearanceCache.get(key);
+    if (appearanceStream != null)
+      return appearanceStream;
+    // content drawn for another document is wrapped in a stream of this one
+    AppearanceContent content = AppearanceContent.get(key);
+    if (content != null) {
+      appearanceStream = content.createStream(document);
+    } else {
+      PdfEvents.AppearanceStream event = new PdfEvents.AppearanceStream();
+      event.begin();
+      if (shape == AppearanceKey.Shape.RADIO_BUTTON)
+        appearanceStream = createRadioButtonAppearanceStream(document, widget, on);
+      else
+        appearanceStream = createCheckBoxAppearanceStream(document, widget, on);
+      AppearanceContent.put(key, appearanceStream);
+      if (event.shouldCommit()) {
+        event.shape = shape.name();
+        event.on = on;
+        event.commit();
+      }
+    }
+    appearanceCache.put(key, appearanceStream);
+    return appearanceStream;
+  }
+
   private PDAppearanceStream createRadioButtonAppearanceStream(
     final PDDocument document, PDAnnotationWidget widget, boolean on) throws IOException {
 
@@ -771,6 +1262,37 @@ public class PDFGenerationUtils {
     return onAP;
   }
 
+  private PDAppearanceStream createCheckBoxAppearanceStream(
+    final PDDocument document, PDAnnotationWidget widget, boolean on) throws IOException {
+
+    PDRectangle rect = widget.getRectangle();
+    PDAppearanceStream onAP = new PDAppearanceStream(document);
+    onAP.setBBox(new PDRectangle(rect.getWidth(), rect.getHeight()));
+    PDPageContentStream onAPCS = new PDPageContentStream(document, onAP);
+
+    PDAppearanceCharacteristicsDictionary appearanceCharacteristics = widget.getAppearanceCharacteristics();
+    float lineWidth = getLineWidth(widget);
+    onAPCS.setLineWidth(lineWidth);
+    onAPCS.setNonStrokingColor(appearanceCharacteristics.getBackground());
+    onAPCS.addRect(0, 0, rect.getWidth(), rect.getHeight());
+    onAPCS.fill();
+    onAPCS.setStrokingColor(appearanceCharacteristics.getBorderColour());
+    onAPCS.addRect(lineWidth / 2, lineWidth / 2, rect.getWidth() - lineWidth, rect.getHeight() - lineWidth);
+    onAPCS.stroke();
+    if (on) {
+      // check mark
+      onAPCS.setStrokingColor(0f);
+      onAPCS.setLineWidth(rect.getWidth() / 8);
+      onAPCS.moveTo(rect.getWidth() * 0.2f, rect.getHeight() * 0.5f);
+      onAPCS.lineTo(rect.getWidth() * 0.42f, rect.getHeight() * 0.25f);
+      onAPCS.lineTo(rect.getWidth() * 0.8f, rect.getHeight() * 0.78f);
+      onAPCS.stroke();
+    }
+
+    onAPCS.close();
+    return onAP;
+  }
+
   private float getLineWidth(PDAnnotationWidget widget) {
 
     PDBorderStyleDictionary bs = widget.getBorderStyle();
@@ -781,15 +1303,7 @@ public class PDFGenerationUtils {
   }
 
   private void drawCircle(PDPageContentStream cs, float x, float y, float r) throws IOException {
-
-    float magic = r * 0.551784f;
-    cs.moveTo(x, y + r);
-    cs.curveTo(x + magic, y + r, x + r, y + magic, x + r, y);
-    cs.curveTo(x + r, y - magic, x + magic, y - r, x, y - r);
-    cs.curveTo(x - magic, y - r, x - r, y - magic, x - r, y);
-    cs.curveTo(x - r, y + magic, x - magic, y + r, x, y + r);
-    cs.closePath();
-
+    PathTemplate.CIRCLE.add(cs, x - r, y - r, x + r, y + r, r, r);
   }
 
   /**
@@ -803,17 +1317,15 @@ public class PDFGenerationUtils {
   public void addCheckBox( String partialName, String defaultValue,
                    PDColor pdColor) throws IOException {
 
-    if (currentPoint.y <= 15 +  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
+    fieldRegistry.checkName(partialName);
+    moveToNewPageIfNeeded(15);
     float x = currentPoint.x;
     float y = currentPoint.y;
 
     float yOffset = 0f;
     float yCurrent = y - yOffset;
 
-    PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+    CachedFont font = FontRegistry.get(Standard14Fonts.FontName.HELVETICA);
 
 
     COSDictionary cosDict = new COSDictionary();
@@ -843,8 +1355,8 @@ public class PDFGenerationUtils {
 
 
     PDAppearanceCharacteristicsDictionary appearanceCharacteristics = new PDAppearanceCharacteristicsDictionary(new COSDictionary());
-    appearanceCharacteristics.setBorderColour(new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE));
-    appearanceCharacteristics.setBackground(new PDColor(new float[]{1, 1, 1}, PDDeviceRGB.INSTANCE));
+    appearanceCharacteristics.setBorderColour(WIDGET_BORDER_COLOR);
+    appearanceCharacteristics.setBackground(WIDGET_BACKGROUND_COLOR);
 
     java.util.List<PDAnnotationWidget> widgets = checkbox.getWidgets();
     for (PDAnnotationWidget pdAnnotationWidget : widgets)
@@ -854,25 +1366,28 @@ public class PDFGenerationUtils {
       pdAnnotationWidget.setAppearanceCharacteristics(appearanceCharacteristics);
       page.getAnnotations().add(pdAnnotationWidget);
 
+      normalAppearances.setItem(COSName.Off,
+        getAppearanceStream(AppearanceKey.Shape.CHECK_BOX, pdAnnotationWidget, false));
+      normalAppearances.setItem(COSName.YES,
+        getAppearanceStream(AppearanceKey.Shape.CHECK_BOX, pdAnnotationWidget, true));
       pdAnnotationWidget.setAppearance(pdAppearanceDictionary);
+      pdAnnotationWidget.setAppearanceState("Off");
     }
 
-    PDPageContentStream contentStream = null;
     try {
-      contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND,
-        true, false);
+      GraphicsState graphics = getGraphicsState();
+      PDPageContentStream contentStream = graphics.getContentStream();
       contentStream.beginText();
-      contentStream.setFont(font, widgetDefaultFontSize);
-      contentStream.setNonStrokingColor(pdColor);
+      graphics.setFont(font.getFont(), widgetDefaultFontSize);
+      graphics.setNonStrokingColor(pdColor);
       contentStream.newLineAtOffset(x+25, yCurrent + 6);
       contentStream.showText(defaultValue);
       contentStream.endText();
-      contentStream.close();
     } catch (IOException e) {
       e.printStackTrace();
     }
 
-    acroForm.getFields().add(checkbox);
+    fieldRegistry.add(checkbox);
 
     currentPoint.y = (int) (y - 15 - 2*leading);
 
@@ -889,17 +1404,47 @@ public class PDFGenerationUtils {
    */
   public void addTextField(String partialName, String defaultValue,
                            int width, int height) throws IOException {
-    System.out.println("TEXT FIELD partial name:"+partialName+" : "+defaultValue);
-    PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+    fieldRegistry.checkName(partialName);
+    fieldRegistry.add(createTextField(partialName, defaultValue, width, height));
+  }
 
+  /**
+   * To add text fields of same size one below the other
+   * Names are checked before any field is drawn, form is updated once for all fields
+   * @param fields : field names mapped to default values
+   * @param width
+   * @param height
+   * @throws IOException
+   */
+  public void addTextFields(LinkedHashMap<String, String> fields,
+                            int width, int height) throws IOException {
+    for (String partialName : fields.keySet())
+      fieldRegistry.checkName(partialName);
+    List<PDField> textFields = new ArrayList<>(fields.size());
+    for (Map.Entry<String, String> field : fields.entrySet())
+      textFields.add(createTextField(field.getKey(), field.getValue(), width, height));
+    fieldRegistry.addAll(textFields);
+  }
+
+  /**
+   * To get field added to form
+   * @param partialName : field name
+   * @return : field, null if there is no field with this name
+   */
+  public PDField getField(String partialName) {
+    return fieldRegistry.get(partialName);
+  }
+
+  /**
+   * To draw text field widget, field is not added to form
+   */
+  private PDTextField createTextField(String partialName, String defaultValue,
+                                      int width, int height) throws IOException {
     String defaultAppearance = "/Helv "+ widgetDefaultFontSize +" Tf 0 g";
     int padding = 4;
 
     currentPoint.y = currentPoint.y - 3*leading;
-    if (currentPoint.y <= height +  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
+    moveToNewPageIfNeeded(height);
     float x = currentPoint.x;
     float y = currentPoint.y;
 
@@ -928,8 +1473,8 @@ public class PDFGenerationUtils {
 
 
     PDAppearanceCharacteristicsDictionary appearanceCharacteristics = new PDAppearanceCharacteristicsDictionary(new COSDictionary());
-    appearanceCharacteristics.setBorderColour(new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE));
-    appearanceCharacteristics.setBackground(new PDColor(new float[]{1, 1, 1}, PDDeviceRGB.INSTANCE));
+    appearanceCharacteristics.setBorderColour(WIDGET_BORDER_COLOR);
+    appearanceCharacteristics.setBackground(WIDGET_BACKGROUND_COLOR);
 
     java.util.List<PDAnnotationWidget> widgets = pdTextField.getWidgets();
     for (PDAnnotationWidget pdAnnotationWidget : widgets)
@@ -943,14 +1488,8 @@ public class PDFGenerationUtils {
       page.getAnnotations().add(pdAnnotationWidget);
 
     }
-    acroForm.getFields().add(pdTextField);
-    document.getDocumentCatalog().setAcroForm(acroForm);
-    PDResources dr = new PDResources();
-    dr.put(COSName.getPDFName("Helv"), font);
-    acroForm.setDefaultResources(dr);
-
     currentPoint.y = (int) (yCurrent - 3*leading);
-
+    return pdTextField;
   }
 
 
@@ -967,20 +1506,16 @@ public class PDFGenerationUtils {
                            int width, int height,
                            java.util.List<String> options) throws IOException {
 
-    String defaultAppearance = "/Helv "+widgetDefaultFontSize+" Tf 0 g";
+    fieldRegistry.checkName(partialName);
+    String defaultAppearance = "/HeBo "+widgetDefaultFontSize+" Tf 0 g";
 
-    if (currentPoint.y <= height +  MARGIN) {
-      page = addNewPage(document);
-      initDrawingPoints();
-    }
+    moveToNewPageIfNeeded(height);
     float x = currentPoint.x;
     float y = currentPoint.y;
 
     float yOffset = 0;
     float yCurrent = y - yOffset;
 
-    PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
-
     PDComboBox comboBox = new PDComboBox(acroForm);
     comboBox.setPartialName(partialName);
     comboBox.setDefaultAppearance(defaultAppearance);
@@ -996,8 +1531,8 @@ public class PDFGenerationUtils {
       comboBox.setValue(defaultValue);
 
     PDAppearanceCharacteristicsDictionary appearanceCharacteristics = new PDAppearanceCharacteristicsDictionary(new COSDictionary());
-    appearanceCharacteristics.setBorderColour(new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE));
-    appearanceCharacteristics.setBackground(new PDColor(new float[]{1, 1, 1}, PDDeviceRGB.INSTANCE));
+    appearanceCharacteristics.setBorderColour(WIDGET_BORDER_COLOR);
+    appearanceCharacteristics.setBackground(WIDGET_BACKGROUND_COLOR);
     widget.setAppearanceCharacteristics(appearanceCharacteristics);
 
     List<PDAnnotationWidget> widgets = new ArrayList<>();
@@ -1011,11 +1546,7 @@ public class PDFGenerationUtils {
     comboBox.setWidgets(widgets);
 
 // new
-    acroForm.getFields().add(comboBox);
-    document.getDocumentCatalog().setAcroForm(acroForm);
-    PDResources dr = new PDResources();
-    dr.put(COSName.getPDFName("Helv"), font);
-    acroForm.setDefaultResources(dr);
+    fieldRegistry.add(comboBox);
 
     currentPoint.y = (int) (yCurrent - 3*leading);
 
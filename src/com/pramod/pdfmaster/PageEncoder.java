@@ -0,0 +1,107 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Content stream of one page of a {@link DisplayLayout}, encoded and compressed off the page.
+ *
+ * Pages are encoded in parallel on the common fork/join pool, each with its own resources.
+ * Every page is written by a compressing {@link PDPageContentStream} of a scratch page, and its
+ * compressed bytes are copied to the real page, so pages are identical to pages rendered one by one.
+ * Images must already be embedded in the document, see {@link LayoutNode#prepare(PDFGenerationUtils)}.
+ */
+final class PageEncoder {
+  private final PDResources resources;
+  private final byte[] content;
+
+  private PageEncoder(PDResources resources, byte[] content) {
+    this.resources = resources;
+    this.content = content;
+  }
+
+  /**
+   * To encode pages of layout in parallel
+   * @param pdf : document images were embedded in
+   * @param layout : resolved layout
+   * @param pageStarts : index of first node of every page, followed by number of nodes
+   * @param fromPage : first page to encode
+   * @param toPage : page after last page to encode
+   * @return : encoded pages in order, null for pages without content
+   * @throws IOException
+   */
+  static PageEncoder[] encode(PDFGenerationUtils pdf, DisplayLayout layout, int[] pageStarts,
+                              int fromPage, int toPage) throws IOException {
+    try {
+      return IntStream.range(fromPage, toPage).parallel()
+        .mapToObj(page -> encode(pdf, layout, pageStarts[page], pageStarts[page + 1]))
+        .toArray(PageEncoder[]::new);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static PageEncoder encode(PDFGenerationUtils pdf, DisplayLayout layout, int fromNode, int toNode) {
+    List<LayoutNode> nodes = layout.getNodes();
+    // page is written through a document of its own, as stream buffers of a document are not shared between threads
+    try (PDDocument scratch = new PDDocument()) {
+      PDPage page = new PDPage();
+      GraphicsState graphics = null;
+      try {
+        for (int i = fromNode; i < toNode; i++) {
+          Position position = layout.getPosition(i);
+          if (position == null)
+            continue;
+          if (graphics == null)
+            graphics = new GraphicsState(
+              new PDPageContentStream(scratch, page, PDPageContentStream.AppendMode.APPEND, true));
+          try {
+            nodes.get(i).render(pdf, graphics, position, layout.getPageWidth());
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      } finally {
+        if (graphics != null)
+          graphics.getContentStream().close();
+      }
+      if (graphics == null)
+        return null;
+      byte[] content;
+      try (InputStream inputStream = page.getContentStreams().next().getCOSObject().createRawInputStream()) {
+        content = inputStream.readAllBytes();
+      }
+      return new PageEncoder(page.getResources(), content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * To set encoded content and resources to page
+   * @param document : document page belongs to
+   * @param page : new page without content
+   * @throws IOException
+   */
+  void attach(PDDocument document, PDPage page) throws IOException {
+    COSStream stream = document.getDocument().createCOSStream();
+    stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+    try (OutputStream outputStream = stream.createRawOutputStream()) {
+      outputStream.write(content);
+    }
+    page.setResources(resources);
+    page.setContents(new PDStream(stream));
+  }
+}
@@ -0,0 +1,146 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Closed path of a shape, with every coordinate kept relative to an edge of its box.
+ *
+ * A coordinate is an edge (start, end or centre of box) plus a multiple of radius, so the same template
+ * draws a shape of any box and radius, eg. corners of a rounded rectangle keep their radius while its
+ * edges stretch. Templates are built once, and drawing one only transforms and writes its coordinates,
+ * straight edges as line segments.
+ */
+final class PathTemplate {
+  // control point distance of a cubic bezier approximating a quarter circle of radius 1
+  private static final float BEZ = 0.551915024494f;
+  private static final byte MOVE = 0;
+  private static final byte LINE = 1;
+  private static final byte CURVE = 2;
+  // edges coordinates are relative to, left/bottom, right/top or centre of box
+  private static final byte START = 0;
+  private static final byte END = 1;
+  private static final byte CENTER = 2;
+
+  static final PathTemplate CIRCLE = new PathTemplate()
+    .moveTo(CENTER, 0, CENTER, 1)
+    .curveTo(CENTER, BEZ, CENTER, 1, CENTER, 1, CENTER, BEZ, CENTER, 1, CENTER, 0)
+    .curveTo(CENTER, 1, CENTER, -BEZ, CENTER, BEZ, CENTER, -1, CENTER, 0, CENTER, -1)
+    .curveTo(CENTER, -BEZ, CENTER, -1, CENTER, -1, CENTER, -BEZ, CENTER, -1, CENTER, 0)
+    .curveTo(CENTER, -1, CENTER, BEZ, CENTER, -BEZ, CENTER, 1, CENTER, 0, CENTER, 1);
+
+  static final PathTemplate ROUND_RECT = new PathTemplate()
+    .moveTo(START, 1, END, 0)
+    .lineTo(END, -1, END, 0)
+    .curveTo(END, BEZ - 1, END, 0, END, 0, END, BEZ - 1, END, 0, END, -1)
+    .lineTo(END, 0, START, 1)
+    .curveTo(END, 0, START, 1 - BEZ, END, BEZ - 1, START, 0, END, -1, START, 0)
+    .lineTo(START, 1, START, 0)
+    .curveTo(START, 1 - BEZ, START, 0, START, 0, START, 1 - BEZ, START, 0, START, 1)
+    .lineTo(START, 0, END, -1)
+    .curveTo(START, 0, END, BEZ - 1, START, 1 - BEZ, END, 0, START, 1, END, 0);
+
+  // rounded rectangle with square bottom corners
+  static final PathTemplate TOP_ROUND_RECT = new PathTemplate()
+    .moveTo(START, 1, END, 0)
+    .lineTo(END, -1, END, 0)
+    .curveTo(END, BEZ - 1, END, 0, END, 0, END, BEZ - 1, END, 0, END, -1)
+    .lineTo(END, 0, START, 0)
+    .lineTo(START, 0, START, 0)
+    .lineTo(START, 0, END, -1)
+    .curveTo(START, 0, END, BEZ - 1, START, 1 - BEZ, END, 0, START, 1, END, 0);
+
+  private byte[] operators = new byte[8];
+  private int operatorCount;
+  private byte[] edges = new byte[32];
+  private float[] radii = new float[32];
+  private int coordinateCount;
+
+  private PathTemplate() {
+  }
+
+  /**
+   * To add path to content stream, closed and ready to be filled or stroked
+   * @param contentStream : content stream
+   * @param left : left edge of box
+   * @param bottom : bottom edge of box
+   * @param right : right edge of box
+   * @param top : top edge of box
+   * @param radiusX : horizontal radius
+   * @param radiusY : vertical radius
+   * @throws IOException
+   */
+  void add(PDPageContentStream contentStream, float left, float bottom, float right, float top,
+           float radiusX, float radiusY) throws IOException {
+    float centerX = (left + right) / 2;
+    float centerY = (bottom + top) / 2;
+    int i = 0;
+    for (int operator = 0; operator < operatorCount; operator++) {
+      switch (operators[operator]) {
+        case MOVE -> contentStream.moveTo(
+          x(i, left, right, centerX, radiusX), y(i + 1, bottom, top, centerY, radiusY));
+        case LINE -> contentStream.lineTo(
+          x(i, left, right, centerX, radiusX), y(i + 1, bottom, top, centerY, radiusY));
+        case CURVE -> contentStream.curveTo(
+          x(i, left, right, centerX, radiusX), y(i + 1, bottom, top, centerY, radiusY),
+          x(i + 2, left, right, centerX, radiusX), y(i + 3, bottom, top, centerY, radiusY),
+          x(i + 4, left, right, centerX, radiusX), y(i + 5, bottom, top, centerY, radiusY));
+      }
+      i += operators[operator] == CURVE ? 6 : 2;
+    }
+    contentStream.closePath();
+  }
+
+  private float x(int i, float left, float right, float centerX, float radiusX) {
+    return edge(edges[i], left, right, centerX) + radii[i] * radiusX;
+  }
+
+  private float y(int i, float bottom, float top, float centerY, float radiusY) {
+    return edge(edges[i], bottom, top, centerY) + radii[i] * radiusY;
+  }
+
+  private static float edge(byte edge, float start, float end, float center) {
+    return switch (edge) {
+      case START -> start;
+      case END -> end;
+      default -> center;
+    };
+  }
+
+  private PathTemplate moveTo(byte edgeX, float radiiX, byte edgeY, float radiiY) {
+    return add(MOVE).point(edgeX, radiiX, edgeY, radiiY);
+  }
+
+  private PathTemplate lineTo(byte edgeX, float radiiX, byte edgeY, float radiiY) {
+    return add(LINE).point(edgeX, radiiX, edgeY, radiiY);
+  }
+
+  private PathTemplate curveTo(byte edgeX1, float radiiX1, byte edgeY1, float radiiY1,
+                               byte edgeX2, float radiiX2, byte edgeY2, float radiiY2,
+                               byte edgeX3, float radiiX3, byte edgeY3, float radiiY3) {
+    return add(CURVE).point(edgeX1, radiiX1, edgeY1, radiiY1)
+      .point(edgeX2, radiiX2, edgeY2, radiiY2)
+      .point(edgeX3, radiiX3, edgeY3, radiiY3);
+  }
+
+  private PathTemplate add(byte operator) {
+    if (operatorCount == operators.length)
+      operators = Arrays.copyOf(operators, 2 * operatorCount);
+    operators[operatorCount++] = operator;
+    return this;
+  }
+
+  private PathTemplate point(byte edgeX, float radiiX, byte edgeY, float radiiY) {
+    if (coordinateCount + 2 > edges.length) {
+      edges = Arrays.copyOf(edges, 2 * edges.length);
+      radii = Arrays.copyOf(radii, 2 * radii.length);
+    }
+    edges[coordinateCount] = edgeX;
+    radii[coordinateCount++] = radiiX;
+    edges[coordinateCount] = edgeY;
+    radii[coordinateCount++] = radiiY;
+    return this;
+  }
+}
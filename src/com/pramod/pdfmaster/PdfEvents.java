@@ -0,0 +1,153 @@
+package com.pramod.pdfmaster;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of document generation.
+ *
+ * Events are disabled by default and have to be enabled by name in a recording, eg. with
+ * {@code recording.enable("com.pramod.pdfmaster.TextLayout")} or in a .jfc settings file.
+ * When disabled, creating and committing an event is removed by the JIT, so instrumented code costs nothing.
+ * Fields are only filled in after {@link Event#shouldCommit()}, so disabled events do not compute them either.
+ */
+final class PdfEvents {
+  private static final String CATEGORY = "PDFMaster";
+
+  private PdfEvents() {
+  }
+
+  @Name("com.pramod.pdfmaster.PageCreated")
+  @Label("Page Created")
+  @Description("New page started, including writing previous page in streaming mode")
+  @Category(CATEGORY)
+  @Enabled(false)
+  @StackTrace(false)
+  static final class PageCreated extends Event {
+    @Label("Page Number")
+    int pageNumber;
+
+    @Label("Streaming")
+    boolean streaming;
+  }
+
+  @Name("com.pramod.pdfmaster.TextLayout")
+  @Label("Text Layout")
+  @Description("Text measured and broken into lines")
+  @Category(CATEGORY)
+  @Enabled(false)
+  @StackTrace(false)
+  static final class TextLayout extends Event {
+    @Label("Characters")
+    int characters;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Font Size")
+    float fontSize;
+  }
+
+  @Name("com.pramod.pdfmaster.ImageFetch")
+  @Label("Image Fetch")
+  @Description("Image file resolved, downloaded through image cache for urls")
+  @Category({CATEGORY, "Image"})
+  @Enabled(false)
+  @StackTrace(false)
+  static final class ImageFetch extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+  }
+
+  @Name("com.pramod.pdfmaster.ImageDecode")
+  @Label("Image Decode")
+  @Description("Image file decoded to pixels")
+  @Category({CATEGORY, "Image"})
+  @Enabled(false)
+  @StackTrace(false)
+  static final class ImageDecode extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Subsampling")
+    int subsampling;
+  }
+
+  @Name("com.pramod.pdfmaster.ImageEncode")
+  @Label("Image Encode")
+  @Description("Image embedded in document, re-encoded or copied as it is")
+  @Category({CATEGORY, "Image"})
+  @Enabled(false)
+  @StackTrace(false)
+  static final class ImageEncode extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Filter")
+    String filter;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Encoded Size")
+    @DataAmount
+    long bytes;
+  }
+
+  @Name("com.pramod.pdfmaster.AppearanceStream")
+  @Label("Appearance Stream")
+  @Description("Appearance stream of a widget drawn, once per shape, size and colours in a process")
+  @Category(CATEGORY)
+  @Enabled(false)
+  @StackTrace(false)
+  static final class AppearanceStream extends Event {
+    @Label("Shape")
+    String shape;
+
+    @Label("On")
+    boolean on;
+  }
+
+  @Name("com.pramod.pdfmaster.DocumentSave")
+  @Label("Document Save")
+  @Description("Document written to file, only document structure and last page in streaming mode")
+  @Category(CATEGORY)
+  @Enabled(false)
+  @StackTrace(false)
+  static final class DocumentSave extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Pages")
+    int pages;
+
+    @Label("Streaming")
+    boolean streaming;
+
+    @Label("File Size")
+    @DataAmount
+    long bytes;
+  }
+}
@@ -0,0 +1,170 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Text made of runs, each with its own colour, font and size, drawn by
+ * {@link PDFGenerationUtils#addRichText(RichText, Gravity)}.
+ *
+ * Runs are kept as offsets into one string, so text is measured once and wrapped across run boundaries
+ * without splitting or copying it, and only style changes between runs are written to content streams.
+ * Runs can be added till text is first drawn or recorded, it does not change afterwards.
+ */
+public final class RichText {
+  private final StringBuilder builder = new StringBuilder();
+  private String text;
+  private float width;
+  private int[] runEnds = new int[4];
+  private CachedFont[] fonts = new CachedFont[4];
+  private int[] fontSizes = new int[4];
+  private PDColor[] colors = new PDColor[4];
+  private int runCount;
+  // run with largest font size, it decides line height
+  private int largestRun = -1;
+
+  /**
+   * To add a run of text in given font
+   * @param text : text of run
+   * @param color : colour of run
+   * @param font : font of run
+   * @param fontSize : font size of run
+   * @return : this rich text
+   */
+  public RichText add(String text, PDColor color, CachedFont font, int fontSize) {
+    if (this.text != null)
+      throw new IllegalStateException("Rich text can not be changed once drawn");
+    if (runCount == runEnds.length) {
+      int capacity = 2 * runCount;
+      runEnds = Arrays.copyOf(runEnds, capacity);
+      fonts = Arrays.copyOf(fonts, capacity);
+      fontSizes = Arrays.copyOf(fontSizes, capacity);
+      colors = Arrays.copyOf(colors, capacity);
+    }
+    builder.append(text);
+    runEnds[runCount] = builder.length();
+    fonts[runCount] = font;
+    fontSizes[runCount] = fontSize;
+    colors[runCount] = color;
+    if (largestRun < 0 || fontSize > fontSizes[largestRun])
+      largestRun = runCount;
+    runCount++;
+    return this;
+  }
+
+  /**
+   * To add a run of text in regular or bold helvetica
+   * @param text : text of run
+   * @param color : colour of run
+   * @param isBold : to display bold text
+   * @param fontSize : font size of run
+   * @return : this rich text
+   */
+  public RichText add(String text, PDColor color, boolean isBold, int fontSize) {
+    return add(text, color, FontRegistry.getHelvetica(isBold), fontSize);
+  }
+
+  /**
+   * To get rich text with a run per part of colour text, in map order
+   * @param text : parts of text and their colours
+   * @param fontSize : font size
+   * @param isBold : to display bold text
+   * @return : rich text
+   */
+  static RichText of(Map<String, PDColor> text, int fontSize, boolean isBold) {
+    RichText richText = new RichText();
+    CachedFont font = FontRegistry.getHelvetica(isBold);
+    text.forEach((part, color) -> richText.add(part, color, font, fontSize));
+    return richText;
+  }
+
+  /**
+   * To get text of all runs, no run can be added after it
+   * @return : text
+   */
+  String getText() {
+    if (text == null) {
+      text = builder.toString();
+      for (int run = 0; run < runCount; run++)
+        width += fonts[run].getStringWidth(text, getRunStart(run), runEnds[run], fontSizes[run]);
+    }
+    return text;
+  }
+
+  /**
+   * @return : width of all runs on one line in points
+   */
+  float getWidth() {
+    getText();
+    return width;
+  }
+
+  int getRunCount() {
+    return runCount;
+  }
+
+  int getRunStart(int run) {
+    return run == 0 ? 0 : runEnds[run - 1];
+  }
+
+  int getRunEnd(int run) {
+    return runEnds[run];
+  }
+
+  CachedFont getFont(int run) {
+    return fonts[run];
+  }
+
+  int getFontSize(int run) {
+    return fontSizes[run];
+  }
+
+  PDColor getColor(int run) {
+    return colors[run];
+  }
+
+  /**
+   * @return : font of run with largest font size
+   */
+  CachedFont getLargestFont() {
+    return largestRun < 0 ? FontRegistry.getHelvetica(false) : fonts[largestRun];
+  }
+
+  /**
+   * @return : largest font size of runs
+   */
+  int getLargestFontSize() {
+    return largestRun < 0 ? 0 : fontSizes[largestRun];
+  }
+
+  /**
+   * @return : whether any run is in an embedded font
+   */
+  boolean hasEmbeddedFont() {
+    for (int run = 0; run < runCount; run++)
+      if (fonts[run].isEmbedded())
+        return true;
+    return false;
+  }
+
+  /**
+   * To measure a code point with font and size of run it is in
+   * @param codePoint : code point
+   * @param index : offset of code point in text
+   * @return : width in 1/1000 points
+   */
+  float getWidth(int codePoint, int index) {
+    int low = 0;
+    int high = runCount - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (runEnds[middle] <= index)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return fonts[low].getWidth(codePoint) * fontSizes[low];
+  }
+}
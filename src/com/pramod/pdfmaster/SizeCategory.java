@@ -0,0 +1,34 @@
+package com.pramod.pdfmaster;
+
+/**
+ * Kind of objects bytes of a saved pdf are counted for in a {@link SizeReport}
+ * CONTENT_STREAMS : page content streams
+ * IMAGES          : image XObjects, including their soft masks
+ * FORM_XOBJECTS   : form XObjects drawn on pages, eg. template blocks
+ * FONTS           : font dictionaries, descriptors, widths and embedded font files
+ * ANNOTATIONS     : annotations and widgets, including their appearance streams
+ * FORM_FIELDS     : form fields that are not widgets themselves, eg. radio button groups
+ * OTHER           : page dictionaries, resources, pages tree, catalog and document info
+ */
+public enum SizeCategory {
+  CONTENT_STREAMS("contentStreams"),
+  IMAGES("images"),
+  FORM_XOBJECTS("formXObjects"),
+  FONTS("fonts"),
+  ANNOTATIONS("annotations"),
+  FORM_FIELDS("formFields"),
+  OTHER("other");
+
+  private final String key;
+
+  SizeCategory(String key) {
+    this.key = key;
+  }
+
+  /**
+   * @return : name of category in json report
+   */
+  public String getKey() {
+    return key;
+  }
+}
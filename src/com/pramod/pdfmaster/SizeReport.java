@@ -0,0 +1,416 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bytes and object counts of a saved pdf by {@link SizeCategory}, per page and in total.
+ *
+ * Sizes are taken from the file itself: an object written on its own takes the bytes up to the next object,
+ * and bytes of an object stream are shared by the objects compressed in it, by their uncompressed size.
+ * Objects used by several pages (fonts, images, appearance streams) are counted once, on the first page using them.
+ * Objects not used by any page (catalog, pages tree, form fields) are counted for the document.
+ */
+public final class SizeReport {
+  private static final SizeCategory[] CATEGORIES = SizeCategory.values();
+
+  private final String file;
+  private final long fileBytes;
+  private final Usage[] pages;
+  private final Usage document;
+  private final Usage total = new Usage();
+
+  private SizeReport(String file, long fileBytes, Usage[] pages, Usage document) {
+    this.file = file;
+    this.fileBytes = fileBytes;
+    this.pages = pages;
+    this.document = document;
+    for (Usage page : pages)
+      total.add(page);
+    total.add(document);
+  }
+
+  /**
+   * To analyse a saved pdf
+   * @param file : pdf file
+   * @return : size report of pdf
+   * @throws IOException
+   */
+  public static SizeReport of(File file) throws IOException {
+    try (PDDocument pdf = Loader.loadPDF(file)) {
+      return new Analysis(pdf.getDocument(), file.length()).run(file.getPath());
+    }
+  }
+
+  /**
+   * @return : path of analysed pdf
+   */
+  public String getFile() {
+    return file;
+  }
+
+  /**
+   * @return : size of pdf file, including header, xref and trailer not counted in any category
+   */
+  public long getFileBytes() {
+    return fileBytes;
+  }
+
+  /**
+   * @return : number of pages
+   */
+  public int getPageCount() {
+    return pages.length;
+  }
+
+  /**
+   * @param category : category of objects
+   * @return : bytes of category in whole document
+   */
+  public long getBytes(SizeCategory category) {
+    return total.bytes[category.ordinal()];
+  }
+
+  /**
+   * @param category : category of objects
+   * @return : number of objects of category in whole document
+   */
+  public int getObjectCount(SizeCategory category) {
+    return total.objects[category.ordinal()];
+  }
+
+  /**
+   * @param page : index of page, 0 for first page
+   * @param category : category of objects
+   * @return : bytes of category first used on page
+   */
+  public long getPageBytes(int page, SizeCategory category) {
+    return pages[page].bytes[category.ordinal()];
+  }
+
+  /**
+   * @param page : index of page, 0 for first page
+   * @param category : category of objects
+   * @return : number of objects of category first used on page
+   */
+  public int getPageObjectCount(int page, SizeCategory category) {
+    return pages[page].objects[category.ordinal()];
+  }
+
+  /**
+   * To write report as json
+   * Has totals, objects not used by pages under "document" and one entry per page under "pages"
+   * @param path : json file path
+   * @throws IOException
+   */
+  public void write(String path) throws IOException {
+    Files.writeString(Path.of(path), toJson(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return : report as json, see {@link #write(String)}
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder(256 + pages.length * 400);
+    json.append("{\n  \"file\": ");
+    appendString(json, file);
+    json.append(",\n  \"fileBytes\": ").append(fileBytes);
+    json.append(",\n  \"pageCount\": ").append(pages.length);
+    json.append(",\n  \"total\": ");
+    total.appendJson(json);
+    json.append(",\n  \"document\": ");
+    document.appendJson(json);
+    json.append(",\n  \"pages\": [");
+    for (int i = 0; i < pages.length; i++) {
+      json.append(i == 0 ? "\n    " : ",\n    ").append("{\"page\": ").append(i + 1).append(", ");
+      pages[i].appendJson(json.append("\"usage\": "));
+      json.append('}');
+    }
+    json.append(pages.length == 0 ? "]\n}\n" : "\n  ]\n}\n");
+    return json.toString();
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> json.append("\\\"");
+        case '\\' -> json.append("\\\\");
+        case '\n' -> json.append("\\n");
+        case '\r' -> json.append("\\r");
+        case '\t' -> json.append("\\t");
+        default -> {
+          if (c < 0x20)
+            json.append(String.format("\\u%04x", (int) c));
+          else
+            json.append(c);
+        }
+      }
+    }
+    json.append('"');
+  }
+
+  /**
+   * Bytes and object counts of every category
+   */
+  private static final class Usage {
+    private final long[] bytes = new long[CATEGORIES.length];
+    private final int[] objects = new int[CATEGORIES.length];
+
+    void add(SizeCategory category, long size) {
+      bytes[category.ordinal()] += size;
+      objects[category.ordinal()]++;
+    }
+
+    void add(Usage usage) {
+      for (int i = 0; i < CATEGORIES.length; i++) {
+        bytes[i] += usage.bytes[i];
+        objects[i] += usage.objects[i];
+      }
+    }
+
+    void appendJson(StringBuilder json) {
+      json.append("{\"bytes\": ").append(Arrays.stream(bytes).sum());
+      for (SizeCategory category : CATEGORIES) {
+        json.append(", \"").append(category.getKey()).append("\": {\"objects\": ")
+          .append(objects[category.ordinal()]).append(", \"bytes\": ").append(bytes[category.ordinal()]).append('}');
+      }
+      json.append('}');
+    }
+  }
+
+  /**
+   * Walk over objects of a loaded pdf, from every page and then from catalog
+   */
+  private static final class Analysis {
+    private final COSDocument document;
+    private final long fileLength;
+    // bytes every object takes in file, by object number
+    private final Map<Long, Long> sizes = new HashMap<>();
+    private final Set<Long> visited = new HashSet<>();
+
+    Analysis(COSDocument document, long fileLength) {
+      this.document = document;
+      this.fileLength = fileLength;
+    }
+
+    SizeReport run(String file) throws IOException {
+      measureObjects();
+      COSDictionary trailer = document.getTrailer();
+      COSDictionary catalog = trailer.getCOSDictionary(COSName.ROOT);
+      List<COSBase> pageReferences = new ArrayList<>();
+      if (catalog != null)
+        collectPages(catalog.getItem(COSName.PAGES), pageReferences);
+
+      Usage[] pages = new Usage[pageReferences.size()];
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = new Usage();
+        visit(pageReferences.get(i), SizeCategory.OTHER, pages[i]);
+      }
+      Usage rest = new Usage();
+      visit(trailer.getItem(COSName.ROOT), SizeCategory.OTHER, rest);
+      visit(trailer.getItem(COSName.INFO), SizeCategory.OTHER, rest);
+      return new SizeReport(file, fileLength, pages, rest);
+    }
+
+    /**
+     * To find bytes taken by every object in xref table
+     */
+    private void measureObjects() throws IOException {
+      Map<COSObjectKey, Long> xref = document.getXrefTable();
+      long[] boundaries = xref.values().stream().filter(offset -> offset > 0).mapToLong(Long::longValue).toArray();
+      boundaries = Arrays.copyOf(boundaries, boundaries.length + 2);
+      boundaries[boundaries.length - 2] = document.getStartXref();
+      boundaries[boundaries.length - 1] = fileLength;
+      Arrays.sort(boundaries);
+
+      // negative offset is number of object stream object is compressed in
+      Map<Long, List<COSObjectKey>> objectStreams = new HashMap<>();
+      for (Map.Entry<COSObjectKey, Long> entry : xref.entrySet()) {
+        long offset = entry.getValue();
+        if (offset > 0) {
+          int next = Arrays.binarySearch(boundaries, offset) + 1;
+          while (next < boundaries.length && boundaries[next] == offset)
+            next++;
+          sizes.put(entry.getKey().getNumber(), next < boundaries.length ? boundaries[next] - offset : 0);
+        } else if (offset < 0) {
+          objectStreams.computeIfAbsent(-offset, number -> new ArrayList<>()).add(entry.getKey());
+        }
+      }
+
+      ByteCounter counter = new ByteCounter();
+      for (Map.Entry<Long, List<COSObjectKey>> objectStream : objectStreams.entrySet()) {
+        List<COSObjectKey> keys = objectStream.getValue();
+        long[] uncompressed = new long[keys.size()];
+        long sum = 0;
+        for (int i = 0; i < keys.size(); i++) {
+          counter.count = 0;
+          writeValue(document.getObjectFromPool(keys.get(i)).getObject(), counter);
+          uncompressed[i] = counter.count;
+          sum += counter.count;
+        }
+        long streamBytes = sizes.getOrDefault(objectStream.getKey(), 0L);
+        for (int i = 0; i < keys.size(); i++)
+          sizes.put(keys.get(i).getNumber(), sum == 0 ? 0 : streamBytes * uncompressed[i] / sum);
+      }
+    }
+
+    private void collectPages(COSBase node, List<COSBase> pageReferences) {
+      COSBase object = node instanceof COSObject ? ((COSObject) node).getObject() : node;
+      if (!(object instanceof COSDictionary))
+        return;
+      COSDictionary dictionary = (COSDictionary) object;
+      if (!COSName.PAGES.equals(dictionary.getCOSName(COSName.TYPE))) {
+        pageReferences.add(node);
+        return;
+      }
+      COSArray kids = dictionary.getCOSArray(COSName.KIDS);
+      if (kids != null) {
+        for (int i = 0; i < kids.size(); i++)
+          collectPages(kids.get(i), pageReferences);
+      }
+    }
+
+    /**
+     * To count an object and objects it refers to, unless they were counted already
+     * @param value : direct value or reference
+     * @param category : category of referring object
+     * @param usage : usage of page or document object is counted for
+     */
+    private void visit(COSBase value, SizeCategory category, Usage usage) {
+      if (value instanceof COSObject) {
+        COSObject reference = (COSObject) value;
+        if (!visited.add(reference.getObjectNumber()))
+          return;
+        value = reference.getObject();
+        if (value == null)
+          return;
+        category = categorize(value, category);
+        usage.add(category, sizes.getOrDefault(reference.getObjectNumber(), 0L));
+      }
+      if (value instanceof COSArray) {
+        COSArray array = (COSArray) value;
+        for (int i = 0; i < array.size(); i++)
+          visit(array.get(i), category, usage);
+      } else if (value instanceof COSDictionary) {
+        COSDictionary dictionary = (COSDictionary) value;
+        for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+          COSName key = entry.getKey();
+          // parents are reached from catalog, not from their kids
+          if (COSName.PARENT.equals(key) || COSName.P.equals(key))
+            continue;
+          visit(entry.getValue(), getEntryCategory(dictionary, key, category), usage);
+        }
+      }
+    }
+
+    private static SizeCategory categorize(COSBase object, SizeCategory category) {
+      if (!(object instanceof COSDictionary))
+        return category;
+      COSDictionary dictionary = (COSDictionary) object;
+      COSName subtype = dictionary.getCOSName(COSName.SUBTYPE);
+      if (object instanceof COSStream) {
+        if (COSName.IMAGE.equals(subtype))
+          return SizeCategory.IMAGES;
+        if (COSName.FORM.equals(subtype))
+          return category == SizeCategory.ANNOTATIONS ? SizeCategory.ANNOTATIONS : SizeCategory.FORM_XOBJECTS;
+        return category;
+      }
+      COSName type = dictionary.getCOSName(COSName.TYPE);
+      if (COSName.FONT.equals(type))
+        return SizeCategory.FONTS;
+      if (COSName.WIDGET.equals(subtype) || COSName.ANNOT.equals(type))
+        return SizeCategory.ANNOTATIONS;
+      if (dictionary.containsKey(COSName.FT))
+        return SizeCategory.FORM_FIELDS;
+      return category;
+    }
+
+    private static SizeCategory getEntryCategory(COSDictionary dictionary, COSName key, SizeCategory category) {
+      if (COSName.CONTENTS.equals(key) && COSName.PAGE.equals(dictionary.getCOSName(COSName.TYPE)))
+        return SizeCategory.CONTENT_STREAMS;
+      if (COSName.ANNOTS.equals(key))
+        return SizeCategory.ANNOTATIONS;
+      return category;
+    }
+
+    /**
+     * To write an object as it is written in an object stream, streams are never compressed in one
+     * @param value : value to write
+     * @param output : stream to write to
+     */
+    private static void writeValue(COSBase value, OutputStream output) throws IOException {
+      if (value instanceof COSObject) {
+        write(((COSObject) value).getObjectNumber() + " 0 R", output);
+      } else if (value instanceof COSDictionary) {
+        write("<<", output);
+        for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) value).entrySet()) {
+          write(" ", output);
+          entry.getKey().writePDF(output);
+          write(" ", output);
+          writeValue(entry.getValue(), output);
+        }
+        write(" >>", output);
+      } else if (value instanceof COSArray) {
+        COSArray array = (COSArray) value;
+        write("[", output);
+        for (int i = 0; i < array.size(); i++) {
+          if (i > 0)
+            write(" ", output);
+          writeValue(array.get(i), output);
+        }
+        write("]", output);
+      } else if (value instanceof COSString) {
+        COSWriter.writeString((COSString) value, output);
+      } else if (value instanceof COSName) {
+        ((COSName) value).writePDF(output);
+      } else if (value instanceof COSInteger) {
+        ((COSInteger) value).writePDF(output);
+      } else if (value instanceof COSFloat) {
+        ((COSFloat) value).writePDF(output);
+      } else if (value instanceof COSBoolean) {
+        ((COSBoolean) value).writePDF(output);
+      } else {
+        write("null", output);
+      }
+    }
+
+    private static void write(String text, OutputStream output) throws IOException {
+      output.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  /**
+   * Output stream only counting bytes written to it
+   */
+  private static final class ByteCounter extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
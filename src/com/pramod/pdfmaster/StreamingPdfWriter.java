@@ -0,0 +1,409 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.filter.Filter;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a pdf page by page, while document is still being generated.
+ *
+ * Every finished page is serialized to the output together with all objects reachable from it
+ * (content stream, resources, annotations), and its dictionary is released afterwards.
+ * Only the object offsets (for xref table) and object numbers of objects still in use are kept,
+ * so heap does not grow with page count.
+ * Pages tree, catalog, form fields and deferred objects (fonts to subset) are written by {@link #finish()}.
+ *
+ * In compact mode, objects other than streams (page, annotation, widget and field dictionaries) are
+ * packed into Flate compressed object streams and the xref table is written as a compressed xref stream.
+ * Streams are compressed with the Flate level of pdfbox, see {@link Filter#getCompressionLevel()}.
+ */
+final class StreamingPdfWriter {
+  private static final byte[] BINARY_COMMENT = {'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'};
+  // objects per object stream in compact mode
+  private static final int OBJECT_STREAM_SIZE = 100;
+
+  private final PDDocument document;
+  private final CountingOutputStream output;
+  private final boolean compact;
+  // where object being written goes, output or object stream being filled
+  private OutputStream target;
+  private final COSDictionary pagesRoot;
+  private final long pagesRootNumber;
+  // object numbers of objects already written or queued, weak so released pages can be collected
+  private final Map<COSBase, Long> objectNumbers = new WeakHashMap<>();
+  private final ArrayDeque<COSBase> objectsToWrite = new ArrayDeque<>();
+  // objects only written by finish, though pages written before refer to them
+  private final Set<COSBase> deferredObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final ArrayDeque<COSBase> deferredObjectsToWrite = new ArrayDeque<>();
+  // offset of every object, or number of object stream it is compressed in
+  private long[] offsets = new long[256];
+  // index in object stream plus one, 0 for objects written on their own
+  private int[] streamIndexes = new int[256];
+  private final ByteArrayOutputStream objectStreamData = new ByteArrayOutputStream();
+  private final StringBuilder objectStreamHeader = new StringBuilder();
+  private long objectStreamNumber;
+  private int objectStreamCount;
+  private long nextObjectNumber = 1;
+  private long[] pageNumbers = new long[64];
+  private int pageCount;
+  private boolean finished;
+
+  /**
+   * To start writing document
+   * @param document : document whose pages are written, pages must not be added to its page tree
+   * @param outputStream : stream to write pdf to, closed by {@link #finish()}
+   * @param compact : true to write object streams and xref stream
+   * @throws IOException
+   */
+  StreamingPdfWriter(PDDocument document, OutputStream outputStream, boolean compact) throws IOException {
+    this.document = document;
+    this.output = new CountingOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+    this.compact = compact;
+    this.target = output;
+    this.pagesRoot = document.getPages().getCOSObject();
+    this.pagesRootNumber = nextObjectNumber++;
+    objectNumbers.put(pagesRoot, pagesRootNumber);
+
+    // object streams and xref streams need pdf 1.5
+    write("%PDF-" + (compact ? Math.max(document.getVersion(), 1.5f) : document.getVersion()) + "\n");
+    output.write(BINARY_COMMENT);
+  }
+
+  /**
+   * To write finished page along with objects it uses
+   * Page dictionary and its content streams are released after writing, page must not be changed afterwards
+   * @param page : page to write
+   * @throws IOException
+   */
+  void writePage(PDPage page) throws IOException {
+    COSDictionary pageDictionary = page.getCOSObject();
+    pageDictionary.setItem(COSName.PARENT, pagesRoot);
+
+    if (pageCount == pageNumbers.length)
+      pageNumbers = Arrays.copyOf(pageNumbers, pageCount * 2);
+    pageNumbers[pageCount++] = getObjectNumber(pageDictionary);
+    writeQueuedObjects();
+
+    Iterator<PDStream> contentStreams = page.getContentStreams();
+    while (contentStreams.hasNext())
+      contentStreams.next().getCOSObject().close();
+    pageDictionary.clear();
+  }
+
+  /**
+   * To write an object and objects it refers to only in {@link #finish()}, so it can still be changed
+   * after pages using it are written, eg. a font subset to glyphs of all pages
+   * @param object : object to write last
+   */
+  void defer(COSBase object) {
+    deferredObjects.add(object);
+  }
+
+  /**
+   * To write pages tree, catalog and remaining objects, followed by xref table and trailer, or xref stream
+   * Output stream is closed afterwards
+   * @throws IOException
+   */
+  void finish() throws IOException {
+    if (finished)
+      return;
+    finished = true;
+    try {
+      long catalogNumber = getObjectNumber(document.getDocumentCatalog().getCOSObject());
+      deferredObjects.clear();
+      objectsToWrite.addAll(deferredObjectsToWrite);
+      deferredObjectsToWrite.clear();
+      writeQueuedObjects();
+      writePagesRoot();
+      if (objectStreamCount > 0)
+        writeObjectStream();
+
+      if (compact)
+        writeXrefStream(catalogNumber);
+      else
+        writeXrefTable(catalogNumber);
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * To close output stream, pdf is left incomplete if {@link #finish()} was not called
+   * @throws IOException
+   */
+  void close() throws IOException {
+    finished = true;
+    output.close();
+  }
+
+  private void writeXrefTable(long catalogNumber) throws IOException {
+    long xrefOffset = output.getPosition();
+    write("xref\n0 " + nextObjectNumber + "\n");
+    write("0000000000 65535 f\r\n");
+    for (long number = 1; number < nextObjectNumber; number++)
+      write(String.format("%010d 00000 n\r\n", offsets[(int) number]));
+    write("trailer\n<< /Size " + nextObjectNumber + " /Root " + catalogNumber + " 0 R >>\n");
+    write("startxref\n" + xrefOffset + "\n%%EOF\n");
+  }
+
+  /**
+   * To write xref stream, with one entry of type, offset or object stream number, and generation or index
+   * per object, taking as many bytes as largest value needs
+   */
+  private void writeXrefStream(long catalogNumber) throws IOException {
+    long xrefNumber = nextObjectNumber++;
+    long xrefOffset = output.getPosition();
+    setOffset(xrefNumber, xrefOffset, 0);
+    int width = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(Math.max(xrefOffset, xrefNumber)) + 7) / 8);
+
+    byte[] entries = new byte[(int) nextObjectNumber * (width + 3)];
+    int position = putXrefEntry(entries, 0, 0, 0, width, 0xFFFF);
+    for (int number = 1; number < nextObjectNumber; number++) {
+      if (streamIndexes[number] > 0)
+        position = putXrefEntry(entries, position, 2, offsets[number], width, streamIndexes[number] - 1);
+      else
+        position = putXrefEntry(entries, position, 1, offsets[number], width, 0);
+    }
+    byte[] data = deflate(entries);
+    write(xrefNumber + " 0 obj\n<< /Type /XRef /Size " + nextObjectNumber + " /W [1 " + width + " 2] /Root "
+      + catalogNumber + " 0 R /Filter /FlateDecode /Length " + data.length + " >>\nstream\r\n");
+    output.write(data);
+    write("\r\nendstream\nendobj\n");
+    write("startxref\n" + xrefOffset + "\n%%EOF\n");
+  }
+
+  private static int putXrefEntry(byte[] entries, int position, int type, long field, int width, int last) {
+    entries[position++] = (byte) type;
+    for (int shift = (width - 1) * 8; shift >= 0; shift -= 8)
+      entries[position++] = (byte) (field >>> shift);
+    entries[position++] = (byte) (last >>> 8);
+    entries[position++] = (byte) last;
+    return position;
+  }
+
+  private void writePagesRoot() throws IOException {
+    beginObject(pagesRootNumber, false);
+    write("<< /Type /Pages /Count " + pageCount + " /Kids [");
+    for (int i = 0; i < pageCount; i++)
+      write((i == 0 ? "" : " ") + pageNumbers[i] + " 0 R");
+    write("] >>");
+    endObject();
+  }
+
+  private void writeQueuedObjects() throws IOException {
+    COSBase object;
+    while ((object = objectsToWrite.poll()) != null) {
+      beginObject(objectNumbers.get(object), object instanceof COSStream);
+      writeValue(object, true);
+      endObject();
+    }
+  }
+
+  /**
+   * To start writing an indirect object, to output or in compact mode to object stream
+   * @param number : object number
+   * @param isStream : whether object is a stream, streams are always written on their own
+   */
+  private void beginObject(long number, boolean isStream) throws IOException {
+    if (compact && !isStream) {
+      if (objectStreamCount == 0)
+        objectStreamNumber = nextObjectNumber++;
+      setOffset(number, objectStreamNumber, objectStreamCount + 1);
+      objectStreamHeader.append(number).append(' ').append(objectStreamData.size()).append(' ');
+      target = objectStreamData;
+    } else {
+      setOffset(number, output.getPosition(), 0);
+      write(number + " 0 obj\n");
+    }
+  }
+
+  private void endObject() throws IOException {
+    if (target == output) {
+      write("\nendobj\n");
+      return;
+    }
+    write("\n");
+    target = output;
+    if (++objectStreamCount == OBJECT_STREAM_SIZE)
+      writeObjectStream();
+  }
+
+  private void writeObjectStream() throws IOException {
+    byte[] header = objectStreamHeader.toString().getBytes(StandardCharsets.US_ASCII);
+    ByteArrayOutputStream objects = new ByteArrayOutputStream(header.length + objectStreamData.size());
+    objects.write(header);
+    objectStreamData.writeTo(objects);
+    byte[] data = deflate(objects.toByteArray());
+
+    setOffset(objectStreamNumber, output.getPosition(), 0);
+    write(objectStreamNumber + " 0 obj\n<< /Type /ObjStm /N " + objectStreamCount + " /First " + header.length
+      + " /Filter /FlateDecode /Length " + data.length + " >>\nstream\r\n");
+    output.write(data);
+    write("\r\nendstream\nendobj\n");
+
+    objectStreamHeader.setLength(0);
+    objectStreamData.reset();
+    objectStreamCount = 0;
+  }
+
+  private static byte[] deflate(byte[] data) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+    Deflater deflater = new Deflater(Filter.getCompressionLevel());
+    try (DeflaterOutputStream outputStream = new DeflaterOutputStream(compressed, deflater)) {
+      outputStream.write(data);
+    } finally {
+      deflater.end();
+    }
+    return compressed.toByteArray();
+  }
+
+  private long getObjectNumber(COSBase object) {
+    Long number = objectNumbers.get(object);
+    if (number == null) {
+      number = nextObjectNumber++;
+      objectNumbers.put(object, number);
+      if (deferredObjects.contains(object))
+        deferredObjectsToWrite.add(object);
+      else
+        objectsToWrite.add(object);
+    }
+    return number;
+  }
+
+  private void setOffset(long number, long offset, int streamIndex) {
+    if (number >= offsets.length) {
+      offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, (int) number + 1));
+      streamIndexes = Arrays.copyOf(streamIndexes, offsets.length);
+    }
+    offsets[(int) number] = offset;
+    streamIndexes[(int) number] = streamIndex;
+  }
+
+  /**
+   * To write a value, objects other than the one being written are written as references
+   * @param value : value to write
+   * @param isTopLevel : whether value is the indirect object being written
+   */
+  private void writeValue(COSBase value, boolean isTopLevel) throws IOException {
+    if (value instanceof COSObject) {
+      COSBase object = ((COSObject) value).getObject();
+      if (object == null)
+        write("null");
+      else
+        writeReference(object);
+    } else if (value instanceof COSStream) {
+      if (isTopLevel)
+        writeStream((COSStream) value);
+      else
+        writeReference(value);
+    } else if (value instanceof COSDictionary) {
+      if (isTopLevel || value.isDirect())
+        writeDictionary((COSDictionary) value);
+      else
+        writeReference(value);
+    } else if (value instanceof COSArray) {
+      COSArray array = (COSArray) value;
+      write("[");
+      for (int i = 0; i < array.size(); i++) {
+        if (i > 0)
+          write(" ");
+        COSBase item = array.get(i);
+        if (item == null)
+          write("null");
+        else
+          writeValue(item, false);
+      }
+      write("]");
+    } else if (value instanceof COSString) {
+      COSWriter.writeString((COSString) value, target);
+    } else if (value instanceof COSName) {
+      ((COSName) value).writePDF(target);
+    } else if (value instanceof COSInteger) {
+      ((COSInteger) value).writePDF(target);
+    } else if (value instanceof COSFloat) {
+      ((COSFloat) value).writePDF(target);
+    } else if (value instanceof COSBoolean) {
+      ((COSBoolean) value).writePDF(target);
+    } else {
+      write("null");
+    }
+  }
+
+  private void writeReference(COSBase object) throws IOException {
+    write(getObjectNumber(object) + " 0 R");
+  }
+
+  private void writeDictionary(COSDictionary dictionary) throws IOException {
+    write("<<");
+    for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+      if (entry.getValue() == null)
+        continue;
+      write(" ");
+      entry.getKey().writePDF(target);
+      write(" ");
+      writeValue(entry.getValue(), false);
+    }
+    write(" >>");
+  }
+
+  private void writeStream(COSStream stream) throws IOException {
+    writeDictionary(stream);
+    write("\nstream\r\n");
+    try (InputStream data = stream.createRawInputStream()) {
+      data.transferTo(output);
+    }
+    write("\r\nendstream");
+  }
+
+  private void write(String text) throws IOException {
+    target.write(text.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Output stream keeping track of number of bytes written
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long position;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    long getPosition() {
+      return position;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      position += len;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columns and style of a table drawn by {@link PDFGenerationUtils#addTable(Table, java.util.Iterator)}.
+ *
+ * A column has a fixed width, or an auto width measured from its header and a sample of first rows,
+ * auto columns then share width left by fixed columns in proportion to their measured widths.
+ * Cell text wraps inside its column, and header row is repeated on every page table continues on.
+ */
+public final class Table {
+  private static final PDColor BLACK = new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE);
+  private final List<String> headers = new ArrayList<>();
+  // 0 for auto width
+  private float[] widths = new float[4];
+  private Gravity[] gravities = new Gravity[4];
+  private CachedFont FONT = FontRegistry.getHelvetica(false);
+  private CachedFont HEADER_FONT = FontRegistry.getHelvetica(true);
+  private int FONT_SIZE = 10;
+  private float PADDING = 4;
+  private int SAMPLE_ROWS = 50;
+  private PDColor TEXT_COLOR = BLACK;
+  private PDColor HEADER_COLOR;
+  private PDColor BORDER_COLOR = BLACK;
+
+  /**
+   * To add column with width measured from header and sample rows
+   * @param header : header text
+   * @param gravity : alignment of text in cells
+   * @return : this table
+   */
+  public Table addColumn(String header, Gravity gravity) {
+    return addColumn(header, 0, gravity);
+  }
+
+  /**
+   * To add column of fixed width
+   * @param header : header text
+   * @param width : column width in points, 0 to measure it
+   * @param gravity : alignment of text in cells
+   * @return : this table
+   */
+  public Table addColumn(String header, float width, Gravity gravity) {
+    int column = headers.size();
+    if (column == widths.length) {
+      widths = Arrays.copyOf(widths, 2 * column);
+      gravities = Arrays.copyOf(gravities, 2 * column);
+    }
+    headers.add(header);
+    widths[column] = width;
+    gravities[column] = gravity;
+    return this;
+  }
+
+  /**
+   * To set font of cells
+   * @param FONT : font
+   */
+  public void setFONT(CachedFont FONT) {
+    this.FONT = FONT;
+  }
+
+  /**
+   * To set font of header row
+   * @param HEADER_FONT : font
+   */
+  public void setHEADER_FONT(CachedFont HEADER_FONT) {
+    this.HEADER_FONT = HEADER_FONT;
+  }
+
+  /**
+   * To set font size of cells and header row
+   * @param FONT_SIZE : font size
+   */
+  public void setFONT_SIZE(int FONT_SIZE) {
+    this.FONT_SIZE = FONT_SIZE;
+  }
+
+  /**
+   * To set space between cell borders and text
+   * @param PADDING : padding in points
+   */
+  public void setPADDING(float PADDING) {
+    this.PADDING = PADDING;
+  }
+
+  /**
+   * To set number of first rows measured for auto column widths
+   * Sampled rows are held in memory till they are drawn
+   * @param SAMPLE_ROWS : number of rows
+   */
+  public void setSAMPLE_ROWS(int SAMPLE_ROWS) {
+    this.SAMPLE_ROWS = SAMPLE_ROWS;
+  }
+
+  /**
+   * To set text colour of cells and header row
+   * @param TEXT_COLOR : colour
+   */
+  public void setTEXT_COLOR(PDColor TEXT_COLOR) {
+    this.TEXT_COLOR = TEXT_COLOR;
+  }
+
+  /**
+   * To set background of header row
+   * @param HEADER_COLOR : colour, null for none
+   */
+  public void setHEADER_COLOR(PDColor HEADER_COLOR) {
+    this.HEADER_COLOR = HEADER_COLOR;
+  }
+
+  /**
+   * To set colour of cell borders
+   * @param BORDER_COLOR : colour, null for no borders
+   */
+  public void setBORDER_COLOR(PDColor BORDER_COLOR) {
+    this.BORDER_COLOR = BORDER_COLOR;
+  }
+
+  int getColumnCount() {
+    return headers.size();
+  }
+
+  List<String> getHeaders() {
+    return headers;
+  }
+
+  Gravity getGravity(int column) {
+    return gravities[column];
+  }
+
+  CachedFont getFont(boolean isHeader) {
+    return isHeader ? HEADER_FONT : FONT;
+  }
+
+  int getFontSize() {
+    return FONT_SIZE;
+  }
+
+  float getPadding() {
+    return PADDING;
+  }
+
+  PDColor getTextColor() {
+    return TEXT_COLOR;
+  }
+
+  PDColor getHeaderColor() {
+    return HEADER_COLOR;
+  }
+
+  PDColor getBorderColor() {
+    return BORDER_COLOR;
+  }
+
+  /**
+   * @return : whether a column width is measured from sample rows
+   */
+  boolean hasAutoColumns() {
+    for (int column = 0; column < headers.size(); column++)
+      if (widths[column] <= 0)
+        return true;
+    return false;
+  }
+
+  /**
+   * @return : number of first rows to measure
+   */
+  int getSampleRows() {
+    return hasAutoColumns() ? SAMPLE_ROWS : 0;
+  }
+
+  /**
+   * To get width of columns, auto columns fill width left by fixed columns
+   * @param sample : first rows
+   * @param tableWidth : available width
+   * @return : column widths in points
+   */
+  float[] getColumnWidths(Iterable<? extends List<String>> sample, float tableWidth) {
+    int columnCount = headers.size();
+    float[] columnWidths = Arrays.copyOf(widths, columnCount);
+    float[] measured = new float[columnCount];
+    float measuredWidth = 0;
+    float remaining = tableWidth;
+    for (int column = 0; column < columnCount; column++) {
+      if (columnWidths[column] > 0) {
+        remaining -= columnWidths[column];
+        continue;
+      }
+      float width = HEADER_FONT.getStringWidth(headers.get(column), FONT_SIZE);
+      for (List<String> row : sample)
+        if (column < row.size() && row.get(column) != null)
+          width = Math.max(width, FONT.getStringWidth(row.get(column), FONT_SIZE));
+      measured[column] = width + 2 * PADDING;
+      measuredWidth += measured[column];
+    }
+    // auto columns are at least wide enough for padding and one glyph
+    float minWidth = 2 * PADDING + FONT_SIZE;
+    for (int column = 0; column < columnCount; column++)
+      if (columnWidths[column] <= 0)
+        columnWidths[column] = Math.max(minWidth, remaining * measured[column] / measuredWidth);
+    return columnWidths;
+  }
+}
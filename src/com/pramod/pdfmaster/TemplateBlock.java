@@ -0,0 +1,96 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run of static template elements pre-rendered once, drawn as a Form XObject.
+ *
+ * Content is recorded at top of an empty page. It is drawn translated to current position when
+ * whole block fits above bottom margin (and, if block starts at current horizontal position, when
+ * that is the recorded one), which gives same output as drawing the elements one by one.
+ * Otherwise elements are drawn one by one, breaking page where they would.
+ */
+final class TemplateBlock implements TemplateElement {
+  private final List<TemplateElement> elements;
+  private final byte[] content;
+  private final Map<COSName, COSBase> fonts;
+  private final int top;
+  private final int startX;
+  private final int endX;
+  private final int endY;
+  private final float minStartY;
+
+  /**
+   * @param elements : recorded elements
+   * @param content : decoded content stream of elements
+   * @param fonts : font resources used by content
+   * @param top : vertical position block was recorded at
+   * @param startX : horizontal position block was recorded at
+   * @param endX : horizontal position after block
+   * @param endY : vertical position after block
+   * @param minStartY : vertical position above which block fits without page break
+   */
+  TemplateBlock(List<TemplateElement> elements, byte[] content, Map<COSName, COSBase> fonts,
+                int top, int startX, int endX, int endY, float minStartY) {
+    this.elements = List.copyOf(elements);
+    this.content = content;
+    this.fonts = Map.copyOf(fonts);
+    this.top = top;
+    this.startX = startX;
+    this.endX = endX;
+    this.endY = endY;
+    this.minStartY = minStartY;
+  }
+
+  @Override
+  public void draw(PDFGenerationUtils pdfGenerationUtils, Map<String, String> values) throws IOException {
+    for (TemplateElement element : elements)
+      element.draw(pdfGenerationUtils, values);
+  }
+
+  @Override
+  public boolean isStatic() {
+    return true;
+  }
+
+  @Override
+  public boolean resetsX() {
+    return elements.get(0).resetsX();
+  }
+
+  /**
+   * @return : decoded content stream, must not be changed
+   */
+  byte[] getContent() {
+    return content;
+  }
+
+  Map<COSName, COSBase> getFonts() {
+    return fonts;
+  }
+
+  int getTop() {
+    return top;
+  }
+
+  int getStartX() {
+    return startX;
+  }
+
+  int getEndX() {
+    return endX;
+  }
+
+  int getEndY() {
+    return endY;
+  }
+
+  float getMinStartY() {
+    return minStartY;
+  }
+}
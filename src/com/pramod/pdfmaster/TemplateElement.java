@@ -0,0 +1,32 @@
+package com.pramod.pdfmaster;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * One recorded call of a {@link DocumentTemplate}.
+ */
+interface TemplateElement {
+
+  /**
+   * To draw element at current position of document
+   * @param pdfGenerationUtils : document to draw in
+   * @param values : values of placeholders and fields of record
+   * @throws IOException
+   */
+  void draw(PDFGenerationUtils pdfGenerationUtils, Map<String, String> values) throws IOException;
+
+  /**
+   * @return : whether element draws the same for every record, so it can be pre-rendered
+   */
+  default boolean isStatic() {
+    return false;
+  }
+
+  /**
+   * @return : whether element sets horizontal position itself, instead of starting at current one
+   */
+  default boolean resetsX() {
+    return true;
+  }
+}
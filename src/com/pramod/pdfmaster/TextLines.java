@@ -0,0 +1,96 @@
+package com.pramod.pdfmaster;
+
+/**
+ * Result of breaking a text into lines.
+ * Lines are kept as offsets into the original text, so the same result can be used
+ * to estimate height and to draw the text.
+ */
+public final class TextLines {
+  private final String text;
+  private final CachedFont font;
+  private final float fontSize;
+  private final int[] starts;
+  private final int[] ends;
+  private final float[] widths;
+  private final int lineCount;
+
+  TextLines(String text, CachedFont font, float fontSize,
+            int[] starts, int[] ends, float[] widths, int lineCount) {
+    this.text = text;
+    this.font = font;
+    this.fontSize = fontSize;
+    this.starts = starts;
+    this.ends = ends;
+    this.widths = widths;
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * @return : text which was broken into lines
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * @return : font used to measure text, font of largest run for rich text
+   */
+  public CachedFont getFont() {
+    return font;
+  }
+
+  /**
+   * @return : font size used to measure text, largest run size for rich text
+   */
+  public float getFontSize() {
+    return fontSize;
+  }
+
+  /**
+   * @return : number of lines
+   */
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @param index : line index
+   * @return : start offset of line in text (inclusive)
+   */
+  public int getLineStart(int index) {
+    return starts[index];
+  }
+
+  /**
+   * @param index : line index
+   * @return : end offset of line in text (exclusive)
+   */
+  public int getLineEnd(int index) {
+    return ends[index];
+  }
+
+  /**
+   * @param index : line index
+   * @return : width of line in points
+   */
+  public float getLineWidth(int index) {
+    return widths[index];
+  }
+
+  /**
+   * To get text of a line, only needed when line is drawn
+   * @param index : line index
+   * @return : line text
+   */
+  public String getLine(int index) {
+    return text.substring(starts[index], ends[index]);
+  }
+
+  /**
+   * To get height of text, each line takes cap height of font
+   * @return : height in points
+   */
+  public float getHeight() {
+    return lineCount * font.getCapHeight(fontSize);
+  }
+}
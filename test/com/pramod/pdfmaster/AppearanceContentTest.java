@@ -0,0 +1,73 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.pdmodel.interactive.form.PDCheckBox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Widget appearance content drawn once and written in every document.
+ */
+class AppearanceContentTest {
+  private static final PDColor BLACK = new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE);
+
+  @TempDir
+  Path folder;
+
+  private static PDAppearanceStream drawCheckBox(PDFGenerationUtils pdf) throws IOException {
+    pdf.addCheckBox("agree", "I agree", BLACK);
+    return getOffAppearance((PDCheckBox) pdf.getField("agree"));
+  }
+
+  private static PDAppearanceStream getOffAppearance(PDCheckBox checkBox) {
+    return checkBox.getWidgets().get(0).getAppearance().getNormalAppearance().getSubDictionary().get(COSName.Off);
+  }
+
+  private static byte[] getContent(PDAppearanceStream appearanceStream) throws IOException {
+    try (InputStream inputStream = appearanceStream.getContents()) {
+      return inputStream.readAllBytes();
+    }
+  }
+
+  @Test
+  void documentsGetOwnStreamWithSameContent() throws IOException {
+    try (PDFGenerationUtils firstPdf = new PDFGenerationUtils(folder.toString(), "first.pdf");
+         PDFGenerationUtils secondPdf = new PDFGenerationUtils(folder.toString(), "second.pdf")) {
+      PDAppearanceStream first = drawCheckBox(firstPdf);
+      PDAppearanceStream second = drawCheckBox(secondPdf);
+
+      assertNotSame(first.getCOSObject(), second.getCOSObject());
+      assertArrayEquals(getContent(first), getContent(second));
+      assertEquals(first.getBBox().getWidth(), second.getBBox().getWidth());
+      assertEquals(first.getBBox().getHeight(), second.getBBox().getHeight());
+    }
+  }
+
+  @Test
+  void sharedContentIsWrittenInDocument() throws IOException {
+    byte[] content;
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "first.pdf")) {
+      content = getContent(drawCheckBox(pdf));
+    }
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "second.pdf")) {
+      drawCheckBox(pdf);
+      pdf.savePdf();
+    }
+
+    try (PDDocument document = Loader.loadPDF(folder.resolve("second.pdf").toFile())) {
+      PDCheckBox checkBox = (PDCheckBox) document.getDocumentCatalog().getAcroForm().getField("agree");
+      assertArrayEquals(content, getContent(getOffAppearance(checkBox)));
+    }
+  }
+}
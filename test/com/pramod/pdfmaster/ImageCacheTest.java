@@ -0,0 +1,186 @@
+package com.pramod.pdfmaster;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Image cache against a local http server serving images of given sizes with ETags.
+ */
+class ImageCacheTest {
+  private static final long HOUR = 60 * 60 * 1000L;
+
+  @TempDir
+  Path folder;
+
+  private HttpServer server;
+  private final Map<String, byte[]> images = new ConcurrentHashMap<>();
+  private final AtomicInteger downloads = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private volatile boolean failing;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::serve);
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    byte[] image = images.get(exchange.getRequestURI().getPath());
+    if (failing || image == null) {
+      exchange.sendResponseHeaders(failing ? 500 : 404, -1);
+    } else {
+      String etag = "\"" + Arrays.hashCode(image) + "\"";
+      exchange.getResponseHeaders().set("ETag", etag);
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        downloads.incrementAndGet();
+        exchange.sendResponseHeaders(200, image.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+          outputStream.write(image);
+        }
+      }
+    }
+    exchange.close();
+  }
+
+  private String addImage(String name, int size) {
+    byte[] image = new byte[size];
+    Arrays.fill(image, (byte) name.hashCode());
+    images.put("/" + name, image);
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + name;
+  }
+
+  private ImageCache cache(long maxBytes, long revalidateAfterMillis) {
+    return new ImageCache(folder.toFile(), maxBytes, revalidateAfterMillis);
+  }
+
+  @Test
+  void freshEntryIsReturnedWithoutRequest() throws IOException {
+    String url = addImage("a.jpg", 1000);
+    ImageCache cache = cache(ImageCache.DEFAULT_MAX_BYTES, HOUR);
+
+    File first = cache.get(url);
+    File second = cache.get(url);
+
+    assertEquals(first, second);
+    assertArrayEquals(images.get("/a.jpg"), Files.readAllBytes(second.toPath()));
+    assertEquals(1, downloads.get());
+    assertEquals(0, notModified.get());
+  }
+
+  @Test
+  void staleEntryIsRevalidatedWithETag() throws IOException {
+    String url = addImage("a.jpg", 1000);
+    ImageCache cache = cache(ImageCache.DEFAULT_MAX_BYTES, 0);
+
+    cache.get(url);
+    File file = cache.get(url);
+
+    assertEquals(1, downloads.get());
+    assertEquals(1, notModified.get());
+    assertArrayEquals(images.get("/a.jpg"), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  void changedImageIsDownloadedAgain() throws IOException {
+    String url = addImage("a.jpg", 1000);
+    ImageCache cache = cache(ImageCache.DEFAULT_MAX_BYTES, 0);
+
+    cache.get(url);
+    images.put("/a.jpg", new byte[2000]);
+    File file = cache.get(url);
+
+    assertEquals(2, downloads.get());
+    assertEquals(2000, file.length());
+  }
+
+  @Test
+  void staleEntryIsUsedWhenServerFails() throws IOException {
+    String url = addImage("a.jpg", 1000);
+    ImageCache cache = cache(ImageCache.DEFAULT_MAX_BYTES, 0);
+
+    cache.get(url);
+    failing = true;
+    File file = cache.get(url);
+
+    assertNotNull(file);
+    assertArrayEquals(images.get("/a.jpg"), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  void missingImageIsNull() {
+    ImageCache cache = cache(ImageCache.DEFAULT_MAX_BYTES, HOUR);
+    assertNull(cache.get("http://127.0.0.1:" + server.getAddress().getPort() + "/missing.jpg"));
+  }
+
+  @Test
+  void leastRecentlyUsedEntriesAreEvicted() {
+    ImageCache cache = cache(2500, HOUR);
+    File a = cache.get(addImage("a.jpg", 1000));
+    File b = cache.get(addImage("b.jpg", 1000));
+    long now = System.currentTimeMillis();
+    a.setLastModified(now - 30_000);
+    b.setLastModified(now - 60_000);
+
+    File c = cache.get(addImage("c.jpg", 1000));
+
+    assertTrue(a.exists());
+    assertFalse(b.exists());
+    assertTrue(c.exists());
+  }
+
+  @Test
+  void imageLargerThanLimitIsReturned() throws IOException {
+    ImageCache cache = cache(1000, HOUR);
+    File small = cache.get(addImage("small.jpg", 500));
+    small.setLastModified(System.currentTimeMillis() - 60_000);
+
+    File large = cache.get(addImage("large.jpg", 5000));
+
+    assertNotNull(large);
+    assertTrue(large.exists());
+    assertArrayEquals(images.get("/large.jpg"), Files.readAllBytes(large.toPath()));
+    assertFalse(small.exists());
+  }
+
+  @Test
+  void entryDeletedByAnotherCacheIsDownloadedAgain() {
+    String url = addImage("a.jpg", 1000);
+    ImageCache cache = cache(ImageCache.DEFAULT_MAX_BYTES, HOUR);
+    File file = cache.get(url);
+
+    // another cache on the same folder evicts everything
+    cache(0, HOUR).evict();
+    assertFalse(file.exists());
+
+    File again = cache.get(url);
+    assertNotNull(again);
+    assertTrue(again.exists());
+    assertEquals(2, downloads.get());
+  }
+}
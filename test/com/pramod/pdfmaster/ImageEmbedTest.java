@@ -0,0 +1,55 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Images embedded once per pixel size they are encoded with, when drawn at several sizes.
+ */
+class ImageEmbedTest {
+  private static final float DPI = 300;
+
+  @TempDir
+  Path folder;
+
+  private String writeImage(int width, int height) throws IOException {
+    Path image = folder.resolve("image.png");
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", image.toFile());
+    return image.toString();
+  }
+
+  @Test
+  void imageSmallerThanBothSizesIsEmbeddedOnce() throws IOException {
+    String imageUrl = writeImage(200, 200);
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "images.pdf")) {
+      PDImageXObject first = pdf.getImage(imageUrl, 100, 100, DPI);
+      PDImageXObject second = pdf.getImage(imageUrl, 120, 120, DPI);
+
+      assertSame(first, second);
+      assertEquals(200, first.getWidth());
+    }
+  }
+
+  @Test
+  void imageIsEmbeddedPerSizeItIsDownsampledTo() throws IOException {
+    String imageUrl = writeImage(200, 200);
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "images.pdf")) {
+      PDImageXObject small = pdf.getImage(imageUrl, 20, 20, DPI);
+      PDImageXObject larger = pdf.getImage(imageUrl, 30, 30, DPI);
+      PDImageXObject full = pdf.getImage(imageUrl, 100, 100, DPI);
+
+      assertNotSame(small, larger);
+      assertEquals(ImageResampler.getPixels(20, DPI), small.getWidth());
+      assertEquals(ImageResampler.getPixels(30, DPI), larger.getWidth());
+      assertSame(full, pdf.getImage(imageUrl, 100, 100, 0));
+    }
+  }
+}
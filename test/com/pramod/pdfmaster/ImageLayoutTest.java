@@ -0,0 +1,63 @@
+package com.pramod.pdfmaster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Space taken by images drawn directly and from display lists, with and without image files.
+ */
+class ImageLayoutTest {
+  private static final int IMAGES = 10;
+  private static final int IMAGE_HEIGHT = 300;
+
+  @TempDir
+  Path folder;
+
+  private String writeImage() throws IOException {
+    Path image = folder.resolve("image.png");
+    ImageIO.write(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB), "png", image.toFile());
+    return image.toString();
+  }
+
+  private int insertImages(String imageUrl) throws IOException {
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "images.pdf")) {
+      for (int i = 0; i < IMAGES; i++)
+        pdf.insertImage(imageUrl, 100, IMAGE_HEIGHT, Gravity.CENTER);
+      return pdf.getPageCount();
+    }
+  }
+
+  private int addDisplayList(String imageUrl) throws IOException {
+    DisplayList displayList = new DisplayList();
+    for (int i = 0; i < IMAGES; i++)
+      displayList.insertImage(imageUrl, 100, IMAGE_HEIGHT, Gravity.CENTER);
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "images.pdf")) {
+      pdf.addDisplayList(displayList);
+      return pdf.getPageCount();
+    }
+  }
+
+  @Test
+  void directAndDisplayListImagesTakeSameSpace() throws IOException {
+    String imageUrl = writeImage();
+    int pageCount = insertImages(imageUrl);
+
+    assertTrue(pageCount > 1);
+    assertEquals(pageCount, addDisplayList(imageUrl));
+  }
+
+  @Test
+  void missingImageKeepsSpaceOnlyInDisplayList() throws IOException {
+    String imageUrl = folder.resolve("missing.png").toString();
+
+    assertEquals(1, insertImages(imageUrl));
+    assertEquals(insertImages(writeImage()), addDisplayList(imageUrl));
+  }
+}
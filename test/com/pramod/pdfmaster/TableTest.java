@@ -0,0 +1,53 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Header row repeated with rows continuing on a new page.
+ */
+class TableTest {
+  private static final float MARGIN = 25;
+
+  @TempDir
+  Path folder;
+
+  private static String lines(int count) {
+    return String.join(" ", Collections.nCopies(count, "wordword"));
+  }
+
+  @Test
+  void headerAndRowMoveToNewPageTogether() throws IOException {
+    Table table = new Table().addColumn("Text", 60, Gravity.START);
+    float[] widths = {60};
+    float headerHeight = new LayoutNode.TableRow(table, widths, table.getHeaders(), true).getHeight(0);
+    // first y of a page and lowest y a row can end at
+    float top = PDRectangle.A4.getHeight() - 2 * MARGIN;
+    float bottom = MARGIN;
+
+    // tallest row fitting an empty page, but not below header
+    int lineCount = 1;
+    while (new LayoutNode.TableRow(table, widths, List.of(lines(lineCount + 1)), false).getHeight(0)
+      < top - bottom)
+      lineCount++;
+    float rowHeight = new LayoutNode.TableRow(table, widths, List.of(lines(lineCount)), false).getHeight(0);
+    assertTrue(headerHeight + rowHeight >= top - bottom);
+
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "table.pdf")) {
+      pdf.setMARGIN(MARGIN);
+      pdf.addTable(table, Stream.of(List.of("short"), List.of(lines(lineCount))));
+
+      // header and first row, then header and tall row, with no page of a lone header
+      assertEquals(2, pdf.getPageCount());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.pramod.pdfmaster;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Form fields of a template drawn for several records of one document.
+ */
+class TemplateFieldsTest {
+  private static final PDColor BLACK = new PDColor(new float[]{0, 0, 0}, PDDeviceRGB.INSTANCE);
+
+  @TempDir
+  Path folder;
+
+  private CompiledTemplate compileTemplate() throws IOException {
+    DocumentTemplate template = new DocumentTemplate();
+    template.addText("Record", 12, true, BLACK, Gravity.START);
+    template.addTextField("name", "", 200, 20);
+    template.addListField("city", "Pune", 200, 20, List.of("Pune", "Mumbai"));
+    return template.compile();
+  }
+
+  // text fields are drawn with record value as their default value
+  private static String defaultValue(PDFGenerationUtils pdf, String partialName) {
+    return ((PDTextField) pdf.getField(partialName)).getDefaultValue();
+  }
+
+  @Test
+  void fieldsAreNamedWithPrefixPerRecord() throws IOException {
+    CompiledTemplate template = compileTemplate();
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "records.pdf")) {
+      pdf.addTemplate(template, Map.of("name", "Asha"), "record1_");
+      pdf.addTemplate(template, Map.of("name", "Ravi", "city", "Mumbai"), "record2_");
+
+      assertEquals("Asha", defaultValue(pdf, "record1_name"));
+      assertEquals("[Pune]", pdf.getField("record1_city").getValueAsString());
+      assertEquals("Ravi", defaultValue(pdf, "record2_name"));
+      assertEquals("[Mumbai]", pdf.getField("record2_city").getValueAsString());
+      assertNull(pdf.getField("name"));
+    }
+  }
+
+  @Test
+  void duplicateFieldIsRejectedBeforeDrawing() throws IOException {
+    CompiledTemplate template = compileTemplate();
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "records.pdf")) {
+      pdf.addTemplate(template, Map.of("name", "Asha"));
+      int pageCount = pdf.getPageCount();
+
+      // enough records to start a new page if any of them was drawn
+      for (int record = 0; record < 40; record++)
+        assertThrows(IllegalArgumentException.class, () -> pdf.addTemplate(template, Map.of("name", "Ravi")));
+
+      assertEquals(pageCount, pdf.getPageCount());
+      assertEquals("Asha", defaultValue(pdf, "name"));
+    }
+  }
+
+  @Test
+  void duplicateWidgetAtBottomOfPageAddsNoPage() throws IOException {
+    LinkedHashMap<String, String> buttons = new LinkedHashMap<>();
+    buttons.put("Yes", "Yes");
+    buttons.put("No", "No");
+    try (PDFGenerationUtils pdf = new PDFGenerationUtils(folder.toString(), "fields.pdf")) {
+      pdf.addCheckBox("agree", "I agree", BLACK);
+      pdf.addRadioButtons(buttons, "Yes", BLACK, "answer");
+      // duplicates are tried at every line down to bottom margin, where a widget no longer fits
+      for (int line = 0; line < 100; line++) {
+        assertThrows(IllegalArgumentException.class, () -> pdf.addCheckBox("agree", "I agree", BLACK));
+        assertThrows(IllegalArgumentException.class, () -> pdf.addRadioButtons(buttons, "Yes", BLACK, "answer"));
+        assertEquals(1, pdf.getPageCount());
+        pdf.moveToNextLine();
+      }
+    }
+  }
+}